@@ -0,0 +1,147 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.GSON;
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Commits finished exports and checks them again before they are swapped in.
+ * <p>
+ * An export is written to a {@code .part} file, forced to disk, and every entry is inflated and checked against
+ * its CRC on all cores before the file is atomically moved into place. The {@code .check.json} sidecar then records
+ * the archive size and a CRC of its central directory, which is enough to spot a truncated or replaced archive
+ * without reading it in full.
+ */
+public class ArchiveChecksum {
+    public static final String SUFFIX = ".check.json";
+    private static final String PART_SUFFIX = ".part";
+    private static final int VERIFY_BATCH = 256;
+
+    private long size;
+    private long centralOffset;
+    private int entries;
+    private String centralCrc;
+
+    public static Path pathFor(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + SUFFIX);
+    }
+
+    public static Path partFor(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + PART_SUFFIX);
+    }
+
+    /** Syncs and verifies {@code part}, moves it over {@code target} and writes the checksum sidecar. */
+    public static void commit(Path part, Path target, int threads) throws IOException {
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        long start = System.nanoTime();
+        ArchiveChecksum checksum = verify(part, threads);
+        LOGGER.info("Verified {} entries of {} in {} ms", checksum.entries, target.getFileName(), (System.nanoTime() - start) / 1_000_000);
+
+        Files.deleteIfExists(pathFor(target));
+        try {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try {
+            ConfigManager.writeAtomically(pathFor(target), GSON.toJson(checksum));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write checksum for {}", target, e);
+        }
+    }
+
+    /** Inflates every entry in parallel and compares it with the CRC from the central directory. */
+    public static ArchiveChecksum verify(Path archive, int threads) throws IOException {
+        try (ZipArchiveReader reader = new ZipArchiveReader(archive);
+             ExportPipeline pipeline = new ExportPipeline(threads, 1)) {
+            List<ZipArchiveReader.RawEntry> all = new ArrayList<>(reader.entries());
+            List<List<ZipArchiveReader.RawEntry>> batches = new ArrayList<>();
+            for (int i = 0; i < all.size(); i += VERIFY_BATCH) {
+                batches.add(all.subList(i, Math.min(all.size(), i + VERIFY_BATCH)));
+            }
+
+            for (String problem : pipeline.map(batches, batch -> checkBatch(reader, batch))) {
+                if (problem != null) throw new ZipException(problem);
+            }
+
+            ArchiveChecksum checksum = new ArchiveChecksum();
+            checksum.size = Files.size(archive);
+            checksum.centralOffset = reader.getCentralDirectoryOffset();
+            checksum.entries = all.size();
+            checksum.centralCrc = ExportManifest.hash(centralCrc(archive, checksum.centralOffset, checksum.size));
+            return checksum;
+        }
+    }
+
+    /**
+     * Quick check used before a pending archive is swapped in. Archives without a sidecar, written before
+     * sidecars existed or delivered by hand, only need a readable central directory.
+     */
+    public static boolean isValid(Path archive) {
+        try {
+            Path sidecar = pathFor(archive);
+            if (!Files.isRegularFile(sidecar)) {
+                new ZipArchiveReader(archive).close();
+                return true;
+            }
+
+            ArchiveChecksum checksum;
+            try (Reader reader = Files.newBufferedReader(sidecar)) {
+                checksum = GSON.fromJson(reader, ArchiveChecksum.class);
+            }
+            if (checksum == null || checksum.centralCrc == null) return false;
+            long size = Files.size(archive);
+            if (size != checksum.size || checksum.centralOffset < 0 || checksum.centralOffset > size) return false;
+            return checksum.centralCrc.equals(ExportManifest.hash(centralCrc(archive, checksum.centralOffset, size)));
+        } catch (Exception e) {
+            LOGGER.debug("Archive {} failed validation", archive, e);
+            return false;
+        }
+    }
+
+    private static String checkBatch(ZipArchiveReader reader, List<ZipArchiveReader.RawEntry> batch) {
+        CRC32 crc = new CRC32();
+        for (ZipArchiveReader.RawEntry entry : batch) {
+            try {
+                crc.reset();
+                crc.update(reader.read(entry));
+                if (crc.getValue() != entry.crc()) return "CRC mismatch for " + entry.name() + " in " + reader.getFile();
+            } catch (IOException e) {
+                return e.getMessage();
+            }
+        }
+        return null;
+    }
+
+    private static long centralCrc(Path archive, long offset, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            long position = offset;
+            while (position < size) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                if (n < 0) throw new ZipException("Unexpected end of " + archive);
+                crc.update(buffer.flip());
+                position += n;
+            }
+        }
+        return crc.getValue();
+    }
+}
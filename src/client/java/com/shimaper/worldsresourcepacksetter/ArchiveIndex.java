@@ -0,0 +1,210 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.GSON;
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Names of the archives exported into a folder, oldest first, so applying them doesn't need a directory scan,
+ * plus the next free {@code <prefix>_<n>.zip} index per prefix so naming a new archive doesn't either.
+ * Only archives listed here are ever pruned; files dropped into the folder by hand are left alone.
+ */
+public class ArchiveIndex {
+    public static final String FILE_NAME = ".wrs_archives.json";
+
+    private List<String> archives = new ArrayList<>();
+    private Map<String, Integer> nextIndex = new HashMap<>();
+
+    public record Retention(int keepCount, long maxBytes, long maxAgeMillis) {
+        public static Retention of(WrsCommon.ModConfig config) {
+            return new Retention(Math.max(0, config.retainArchives), Math.max(0, config.retainMegabytes) * 1024L * 1024L,
+                    Math.max(0, config.retainDays) * 24L * 60 * 60 * 1000);
+        }
+
+        public boolean isUnlimited() {
+            return keepCount == 0 && maxBytes == 0 && maxAgeMillis == 0;
+        }
+    }
+
+    public static Path pathFor(Path folder) {
+        return folder.resolve(FILE_NAME);
+    }
+
+    public static ArchiveIndex load(Path folder) {
+        Path file = pathFor(folder);
+        if (!Files.isRegularFile(file)) return null;
+        try (Reader reader = Files.newBufferedReader(file)) {
+            ArchiveIndex index = GSON.fromJson(reader, ArchiveIndex.class);
+            if (index == null || index.archives == null) return null;
+            return index;
+        } catch (Exception e) {
+            LOGGER.warn("Ignoring unreadable archive index {}", file, e);
+            return null;
+        }
+    }
+
+    public static synchronized void record(Path folder, String archiveName) {
+        ArchiveIndex index = load(folder);
+        if (index == null) index = new ArchiveIndex();
+        index.archives.remove(archiveName);
+        index.archives.add(archiveName);
+        try {
+            index.save(folder);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to update archive index in {}", folder, e);
+        }
+    }
+
+    /** Reserves the next {@code <prefix><n>.zip} in {@code folder}; only the first call for a prefix scans the folder. */
+    public static synchronized Path nextPath(Path folder, String prefix) {
+        return next(folder, prefix, true);
+    }
+
+    /** The path {@link #nextPath} would return now, without reserving it or touching the index. */
+    public static synchronized Path peekNextPath(Path folder, String prefix) {
+        return next(folder, prefix, false);
+    }
+
+    private static Path next(Path folder, String prefix, boolean reserve) {
+        ArchiveIndex index = load(folder);
+        if (index == null) index = new ArchiveIndex();
+        if (index.nextIndex == null) index.nextIndex = new HashMap<>();
+
+        Integer next = index.nextIndex.get(prefix);
+        int i = next != null ? next : scanNextIndex(folder, prefix);
+        // Normally a single check, unless something else took the name since
+        while (Files.exists(folder.resolve(prefix + i + ".zip"))) i++;
+        if (!reserve) return folder.resolve(prefix + i + ".zip");
+
+        index.nextIndex.put(prefix, i + 1);
+        try {
+            index.save(folder);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to update archive index in {}", folder, e);
+        }
+        return folder.resolve(prefix + i + ".zip");
+    }
+
+    /**
+     * Deletes listed archives that fall outside {@code retention}, oldest first. The newest archive is always kept.
+     * @return the number of archives deleted
+     */
+    public static synchronized int prune(Path folder, Retention retention) {
+        ArchiveIndex index = load(folder);
+        if (index == null || retention.isUnlimited()) return 0;
+
+        long now = System.currentTimeMillis();
+        long totalBytes = 0;
+        int kept = 0;
+        int deleted = 0;
+        boolean pruning = false;
+        List<String> remaining = new ArrayList<>();
+        for (int i = index.archives.size() - 1; i >= 0; i--) {
+            String name = index.archives.get(i);
+            Path archive = folder.resolve(name);
+            long size;
+            long age;
+            try {
+                size = Files.size(archive);
+                age = now - Files.getLastModifiedTime(archive).toMillis();
+            } catch (IOException e) {
+                continue;
+            }
+
+            // Once one archive falls outside the policy, every older one goes too
+            pruning |= kept > 0 && ((retention.keepCount() > 0 && kept >= retention.keepCount())
+                    || (retention.maxBytes() > 0 && totalBytes + size > retention.maxBytes())
+                    || (retention.maxAgeMillis() > 0 && age > retention.maxAgeMillis()));
+            if (pruning) {
+                try {
+                    WorldResourceManager.deleteWithSidecars(archive);
+                    deleted++;
+                    continue;
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to prune {}", archive, e);
+                }
+            }
+            kept++;
+            totalBytes += size;
+            remaining.add(0, name);
+        }
+
+        index.archives = remaining;
+        try {
+            index.save(folder);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to update archive index in {}", folder, e);
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes every listed archive except the newest and {@code keep}, for exports that only ever supersede each other.
+     * @return the number of archives deleted
+     */
+    public static synchronized int dropSuperseded(Path folder, String keep) {
+        ArchiveIndex index = load(folder);
+        if (index == null || index.archives.size() < 2) return 0;
+
+        String newest = index.archives.get(index.archives.size() - 1);
+        int deleted = 0;
+        List<String> remaining = new ArrayList<>();
+        for (String name : index.archives) {
+            if (!name.equals(newest) && !name.equals(keep)) {
+                try {
+                    WorldResourceManager.deleteWithSidecars(folder.resolve(name));
+                    deleted++;
+                    continue;
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to delete superseded archive {}", folder.resolve(name), e);
+                }
+            }
+            remaining.add(name);
+        }
+
+        index.archives = remaining;
+        try {
+            index.save(folder);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to update archive index in {}", folder, e);
+        }
+        return deleted;
+    }
+
+    private static int scanNextIndex(Path folder, String prefix) {
+        Pattern pattern = Pattern.compile(Pattern.quote(prefix) + "(\\d+)\\.zip");
+        int max = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*.zip")) {
+            for (Path entry : stream) {
+                Matcher m = pattern.matcher(entry.getFileName().toString());
+                if (m.matches()) max = Math.max(max, Integer.parseInt(m.group(1)));
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.debug("Failed to scan {} for archives", folder, e);
+        }
+        return max + 1;
+    }
+
+    public static synchronized void delete(Path folder) throws IOException {
+        Files.deleteIfExists(pathFor(folder));
+    }
+
+    public List<String> getArchives() {
+        return archives;
+    }
+
+    public void save(Path folder) throws IOException {
+        ConfigManager.writeAtomically(pathFor(folder), GSON.toJson(this));
+    }
+}
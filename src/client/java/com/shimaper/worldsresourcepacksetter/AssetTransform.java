@@ -0,0 +1,14 @@
+package com.shimaper.worldsresourcepacksetter;
+
+/**
+ * Rewrites an asset's bytes on the export workers as it is copied into the archive.
+ * Implementations return the input array itself when they leave an asset alone, and must be thread-safe.
+ */
+public interface AssetTransform {
+    /** Becomes part of the baseline key, so archives built with other transforms aren't reused. */
+    String getKey();
+
+    boolean appliesTo(String path);
+
+    byte[] apply(String path, byte[] data);
+}
@@ -0,0 +1,198 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.GSON;
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Exported archives stored once under the game dir by SHA-256, with world archives hard-linked to them.
+ * Each blob keeps the set of worlds that link to it; a blob is deleted once no world does.
+ */
+public class BlobStore {
+    public static final String FOLDER = "wrs_blobs";
+    private static final String REFS_FILE = "refs.json";
+
+    private final Path root;
+    private final Path gameDir;
+    private Map<String, Set<String>> refs;
+
+    public BlobStore(Path gameDir) {
+        this.gameDir = gameDir;
+        this.root = gameDir.resolve(FOLDER);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public synchronized Path intern(Path archive) throws IOException {
+        Files.createDirectories(root);
+        Path blob = root.resolve(hash(archive) + ".zip");
+        if (Files.exists(blob)) return blob;
+
+        try {
+            Files.createLink(blob, archive);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | IOException e) {
+            Path temp = blob.resolveSibling(blob.getFileName() + ".tmp");
+            Files.copy(archive, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return blob;
+    }
+
+    /** Replaces {@code archive} inside {@code world} with a link to its blob. Leaves the file alone if linking isn't possible. */
+    public synchronized boolean share(Path archive, Path world) {
+        try {
+            Path blob = intern(archive);
+            if (!Files.isSameFile(blob, archive)) {
+                Path temp = archive.resolveSibling(archive.getFileName() + ".link");
+                Files.deleteIfExists(temp);
+                Files.createLink(temp, blob);
+                try {
+                    Files.move(temp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, archive, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            addRef(blob, world);
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            LOGGER.warn("Could not share {} through the blob store", archive, e);
+            return false;
+        }
+    }
+
+    public synchronized boolean linkInto(Path blob, Path target, Path world) {
+        try {
+            Files.createLink(target, blob);
+        } catch (UnsupportedOperationException | IOException e) {
+            LOGGER.debug("Could not link {} to {}", target, blob, e);
+            return false;
+        }
+        addRef(blob, world);
+        return true;
+    }
+
+    public synchronized void addRef(Path blob, Path world) {
+        if (loadRefs().computeIfAbsent(blob.getFileName().toString(), name -> new LinkedHashSet<>()).add(key(world))) {
+            saveRefs();
+        }
+    }
+
+    /** Drops references from worlds that no longer link to their blob and deletes unreferenced blobs. */
+    public synchronized int collectGarbage() {
+        if (!Files.isDirectory(root)) return 0;
+        Map<String, Set<String>> current = loadRefs();
+        int deleted = 0;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, "*.zip")) {
+            for (Path blob : stream) {
+                String name = blob.getFileName().toString();
+                Set<String> worlds = current.get(name);
+                if (worlds != null) worlds.removeIf(world -> !linksTo(gameDir.resolve(world), blob));
+
+                if (worlds == null || worlds.isEmpty()) {
+                    current.remove(name);
+                    Files.deleteIfExists(blob);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Blob store cleanup failed", e);
+        }
+
+        Iterator<String> names = current.keySet().iterator();
+        while (names.hasNext()) {
+            if (!Files.exists(root.resolve(names.next()))) names.remove();
+        }
+        saveRefs();
+        if (deleted > 0) LOGGER.info("Removed {} unreferenced archives from the blob store", deleted);
+        return deleted;
+    }
+
+    private boolean linksTo(Path world, Path blob) {
+        if (!Files.isDirectory(world)) return false;
+        List<Path> candidates = new ArrayList<>();
+        candidates.add(world.resolve("resources.zip"));
+        ArchiveIndex index = ArchiveIndex.load(world);
+        if (index != null) {
+            for (String archive : index.getArchives()) candidates.add(world.resolve(archive));
+        }
+
+        for (Path candidate : candidates) {
+            try {
+                if (Files.exists(candidate) && Files.isSameFile(candidate, blob)) return true;
+            } catch (IOException ignored) {
+                //
+            }
+        }
+        return false;
+    }
+
+    private String key(Path world) {
+        Path normalized = world.toAbsolutePath().normalize();
+        Path relative = normalized.startsWith(gameDir) ? gameDir.relativize(normalized) : normalized;
+        return relative.toString().replace("\\", "/");
+    }
+
+    private Map<String, Set<String>> loadRefs() {
+        if (refs != null) return refs;
+        refs = new TreeMap<>();
+        Path file = root.resolve(REFS_FILE);
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                Map<String, Set<String>> loaded = GSON.fromJson(reader, new TypeToken<Map<String, LinkedHashSet<String>>>() {}.getType());
+                if (loaded != null) refs.putAll(loaded);
+            } catch (Exception e) {
+                LOGGER.warn("Ignoring unreadable blob references {}", file, e);
+            }
+        }
+        return refs;
+    }
+
+    private void saveRefs() {
+        try {
+            Files.createDirectories(root);
+            ConfigManager.writeAtomically(root.resolve(REFS_FILE), GSON.toJson(refs));
+        } catch (IOException e) {
+            LOGGER.error("Failed to save blob references", e);
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,68 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+
+public class CompressionPolicy {
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<>();
+
+    private final Set<String> storedExtensions = new HashSet<>();
+    private final int level;
+
+    public CompressionPolicy(int level, Iterable<String> storedExtensions) {
+        this.level = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+        for (String extension : storedExtensions) {
+            this.storedExtensions.add(extension.toLowerCase(Locale.ROOT).replace(".", ""));
+        }
+    }
+
+    public static CompressionPolicy of(WrsCommon.ModConfig config) {
+        return new CompressionPolicy(config.compressionLevel, config.storedExtensions == null ? List.of() : config.storedExtensions);
+    }
+
+    public String getKey() {
+        return level + ":" + String.join(",", new TreeSet<>(storedExtensions));
+    }
+
+    public boolean shouldDeflate(String path) {
+        if (level == Deflater.NO_COMPRESSION) return false;
+        int dot = path.lastIndexOf('.');
+        return dot < 0 || !storedExtensions.contains(path.substring(dot + 1));
+    }
+
+    public ExportPipeline.Entry compress(String path, byte[] data, long crc) {
+        if (shouldDeflate(path) && data.length > 0) {
+            byte[] deflated = deflate(data);
+            if (deflated != null) return new ExportPipeline.Entry(path, ZipArchiveWriter.DEFLATED, crc, data.length, deflated);
+        }
+        return new ExportPipeline.Entry(path, ZipArchiveWriter.STORED, crc, data.length, data);
+    }
+
+    private byte[] deflate(byte[] data) {
+        Deflater deflater = DEFLATERS.get();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            DEFLATERS.set(deflater);
+        }
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] out = new byte[Math.max(64, data.length / 2)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == out.length) {
+                if (out.length >= data.length) return null;
+                out = Arrays.copyOf(out, Math.min(data.length, out.length * 2));
+            }
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        return length < data.length ? Arrays.copyOf(out, length) : null;
+    }
+}
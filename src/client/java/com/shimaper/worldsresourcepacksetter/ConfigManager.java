@@ -1,20 +1,61 @@
 package com.shimaper.worldsresourcepacksetter;
 
 import net.fabricmc.loader.api.FabricLoader;
+import java.io.IOException;
 import java.io.Reader;
-import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import static com.shimaper.worldsresourcepacksetter.WrsCommon.GSON;
 import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
 
+/**
+ * Pending-world changes are batched and appended to a journal next to the config; the journal
+ * is folded back into the config on load or once it grows large. Full saves replace the file atomically.
+ */
 public class ConfigManager {
-    private final Path configFile = FabricLoader.getInstance().getConfigDir().resolve("wrs_config.json");
-    private final Path mcRoot = FabricLoader.getInstance().getGameDir().toAbsolutePath().normalize();
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final long FLUSH_DELAY_MS = 500;
+    private static final int COMPACT_THRESHOLD = 256;
+
+    private final Path configFile;
+    private final Path journalFile;
+    private final Path mcRoot;
+    private final List<String> unflushed = new ArrayList<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WRS Config");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> scheduledFlush;
+    private int journalLines;
     private WrsCommon.ModConfig config = new WrsCommon.ModConfig();
 
-    public void load() {
+    public ConfigManager() {
+        this(FabricLoader.getInstance().getConfigDir().resolve("wrs_config.json"), FabricLoader.getInstance().getGameDir());
+    }
+
+    public ConfigManager(Path configFile, Path gameDir) {
+        this.configFile = configFile;
+        this.journalFile = configFile.resolveSibling(configFile.getFileName() + JOURNAL_SUFFIX);
+        this.mcRoot = gameDir.toAbsolutePath().normalize();
+    }
+
+    public synchronized void load() {
         if (Files.exists(configFile)) {
             try (Reader reader = Files.newBufferedReader(configFile)) {
                 config = GSON.fromJson(reader, WrsCommon.ModConfig.class);
@@ -23,37 +64,126 @@ public class ConfigManager {
             }
         }
         if (config == null) config = new WrsCommon.ModConfig();
+        if (config.pendingWorlds == null) config.pendingWorlds = new LinkedHashSet<>();
+
+        if (Files.exists(journalFile)) {
+            replayJournal();
+            save();
+        }
     }
 
-    public void save() {
-        try (Writer writer = Files.newBufferedWriter(configFile)) {
-            GSON.toJson(config, writer);
+    public synchronized void save() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        try {
+            writeAtomically(configFile, GSON.toJson(config));
+            Files.deleteIfExists(journalFile);
+            unflushed.clear();
+            journalLines = 0;
         } catch (Exception e) {
             LOGGER.error("Failed to save WRS config", e);
         }
     }
 
+    public synchronized void flush() {
+        scheduledFlush = null;
+        if (unflushed.isEmpty()) return;
+        if (journalLines + unflushed.size() > COMPACT_THRESHOLD) {
+            save();
+            return;
+        }
+
+        StringBuilder lines = new StringBuilder();
+        for (String line : unflushed) lines.append(line).append('\n');
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+            journalLines += unflushed.size();
+            unflushed.clear();
+        } catch (IOException e) {
+            LOGGER.error("Failed to append to WRS config journal, saving in full", e);
+            save();
+        }
+    }
+
     public WrsCommon.ModConfig getConfig() {
         return config;
     }
 
-    public void addPendingWorld(Path absolutePath) {
-        try {
-            Path normalizedAbs = absolutePath.toAbsolutePath().normalize();
-            String pathString;
+    public Path getGameDir() {
+        return mcRoot;
+    }
+
+    public synchronized List<String> getPendingWorlds() {
+        return new ArrayList<>(config.pendingWorlds);
+    }
 
-            if (normalizedAbs.startsWith(mcRoot)) {
-                pathString = mcRoot.relativize(normalizedAbs).toString().replace("\\", "/");
-            } else {
-                pathString = normalizedAbs.toString().replace("\\", "/");
+    public synchronized void removePendingWorlds(Collection<String> worlds) {
+        for (String world : worlds) {
+            if (config.pendingWorlds.remove(world)) journal('-', world);
+        }
+    }
+
+    public synchronized void addPendingWorld(Path absolutePath) {
+        addPendingWorlds(List.of(absolutePath));
+    }
+
+    public synchronized void addPendingWorlds(Collection<Path> absolutePaths) {
+        for (Path absolutePath : absolutePaths) {
+            try {
+                Path normalizedAbs = absolutePath.toAbsolutePath().normalize();
+                String pathString;
+
+                if (normalizedAbs.startsWith(mcRoot)) {
+                    pathString = mcRoot.relativize(normalizedAbs).toString().replace("\\", "/");
+                } else {
+                    pathString = normalizedAbs.toString().replace("\\", "/");
+                }
+
+                if (config.pendingWorlds.add(pathString)) journal('+', pathString);
+            } catch (Exception e) {
+                LOGGER.error("Error relativizing path", e);
             }
+        }
+    }
 
-            if (!config.pendingWorlds.contains(pathString)) {
-                config.pendingWorlds.add(pathString);
-                save();
+    private void journal(char op, String world) {
+        unflushed.add(op + world);
+        if (scheduledFlush == null) {
+            scheduledFlush = flusher.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void replayJournal() {
+        try {
+            for (String line : Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+                if (line.length() < 2) continue;
+                String world = line.substring(1);
+                switch (line.charAt(0)) {
+                    case '+' -> config.pendingWorlds.add(world);
+                    case '-' -> config.pendingWorlds.remove(world);
+                    default -> LOGGER.warn("Skipping malformed WRS journal line: {}", line);
+                }
             }
         } catch (Exception e) {
-            LOGGER.error("Error relativizing path", e);
+            LOGGER.error("Failed to replay WRS config journal", e);
+        }
+    }
+
+    static void writeAtomically(Path file, String content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
         }
     }
-}
\ No newline at end of file
+}
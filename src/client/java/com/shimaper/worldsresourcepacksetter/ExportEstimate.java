@@ -0,0 +1,109 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What an export would produce, worked out from a listed {@link ExportPlan} without reading any resource.
+ * Compressed sizes come from the source zips where entries are copied as they are; everything else that gets
+ * deflated is scaled by the ratio those zips achieved.
+ */
+public class ExportEstimate {
+    private static final double DEFAULT_RATIO = 0.35;
+
+    public record PackEstimate(String id, int contributed, int shadowed, boolean failed) {}
+
+    private final List<PackEstimate> packs = new ArrayList<>();
+    private int entries;
+    private int shadowed;
+    private int unknownSizes;
+    private long uncompressedBytes;
+    private long compressedBytes;
+    private double throughputMBs;
+
+    private ExportEstimate() {}
+
+    /** @param throughputMBs output throughput of past exports, or 0 if there were none */
+    public static ExportEstimate of(ExportPlan plan, CompressionPolicy policy, double throughputMBs) {
+        ExportEstimate estimate = new ExportEstimate();
+        estimate.entries = plan.getEntryCount();
+        estimate.shadowed = plan.getShadowedCount();
+        estimate.throughputMBs = throughputMBs;
+
+        long knownBytes = 0;
+        int known = 0;
+        long sampleSize = 0;
+        long sampleCompressed = 0;
+        for (ExportPlan.PackPlan packPlan : plan.getPacks()) {
+            estimate.packs.add(new PackEstimate(packPlan.getId(), packPlan.getEntries().size(), packPlan.getShadowedCount(), packPlan.isFailed()));
+            for (ExportPlan.PlannedEntry entry : packPlan.getEntries()) {
+                if (entry.size() < 0) continue;
+                knownBytes += entry.size();
+                known++;
+                ZipArchiveReader.RawEntry raw = entry.raw();
+                if (raw != null && raw.method() == ZipArchiveWriter.DEFLATED && policy.shouldDeflate(entry.path())) {
+                    sampleSize += raw.size();
+                    sampleCompressed += raw.compressedSize();
+                }
+            }
+        }
+
+        double ratio = sampleSize > 0 ? (double) sampleCompressed / sampleSize : DEFAULT_RATIO;
+        long averageSize = known > 0 ? knownBytes / known : 0;
+        for (ExportPlan.PackPlan packPlan : plan.getPacks()) {
+            for (ExportPlan.PlannedEntry entry : packPlan.getEntries()) {
+                long size = entry.size();
+                if (size < 0) {
+                    estimate.unknownSizes++;
+                    size = averageSize;
+                }
+                estimate.uncompressedBytes += size;
+
+                ZipArchiveReader.RawEntry raw = entry.raw();
+                if (raw != null && raw.method() == ZipArchiveWriter.DEFLATED) {
+                    estimate.compressedBytes += raw.compressedSize();
+                } else if (policy.shouldDeflate(entry.path())) {
+                    estimate.compressedBytes += Math.round(size * ratio);
+                } else {
+                    estimate.compressedBytes += size;
+                }
+            }
+        }
+        return estimate;
+    }
+
+    public List<PackEstimate> getPacks() {
+        return packs;
+    }
+
+    public int getEntryCount() {
+        return entries;
+    }
+
+    public int getShadowedCount() {
+        return shadowed;
+    }
+
+    /** Entries whose size couldn't be read from the listing; they are counted at the average size. */
+    public int getUnknownSizeCount() {
+        return unknownSizes;
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    public double getThroughputMBs() {
+        return throughputMBs;
+    }
+
+    /** Projected export time, or -1 when there is no past export to base it on. */
+    public double getSeconds() {
+        if (throughputMBs <= 0) return -1;
+        return compressedBytes / 1024.0 / 1024.0 / throughputMBs;
+    }
+}
@@ -0,0 +1,147 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.GSON;
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+public class ExportManifest {
+    public static final String SUFFIX = ".manifest.json";
+    private static final int VERSION = 3;
+
+    private int version = VERSION;
+    private String compression;
+    private Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public ExportManifest(String compression) {
+        this.compression = compression;
+    }
+
+    /** @param source CRC of the entry in its source zip, or null for entries read from a folder */
+    public record Entry(String pack, long size, long time, String hash, String source) {}
+
+    public static Path pathFor(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + SUFFIX);
+    }
+
+    public static String hash(long crc) {
+        return String.format("%08x", crc);
+    }
+
+    public static ExportManifest load(Path file) {
+        if (!Files.exists(file)) return null;
+        try (Reader reader = Files.newBufferedReader(file)) {
+            ExportManifest manifest = GSON.fromJson(reader, ExportManifest.class);
+            if (manifest == null || manifest.version != VERSION || manifest.entries == null) return null;
+            return manifest;
+        } catch (Exception e) {
+            LOGGER.warn("Ignoring unreadable manifest {}", file, e);
+            return null;
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            GSON.toJson(this, writer);
+        }
+    }
+
+    public void put(String path, Entry entry) {
+        entries.put(path, entry);
+    }
+
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public static class Baseline implements AutoCloseable {
+        private final Path archive;
+        private final ExportManifest manifest;
+        private final ZipArchiveReader reader;
+
+        private Baseline(Path archive, ExportManifest manifest) throws IOException {
+            this.archive = archive;
+            this.manifest = manifest;
+            this.reader = new ZipArchiveReader(archive);
+        }
+
+        /**
+         * Picks the archive to reuse entries from: the target itself when it was exported before, since the new
+         * archive is written next to it and only moved over it at the end, otherwise the newest export in its folder.
+         */
+        public static Baseline find(Path targetFile, String compression) {
+            Path target = targetFile.toAbsolutePath().normalize();
+            Path previous = Files.isRegularFile(target) && Files.isRegularFile(pathFor(target)) ? target : newestExport(target.getParent());
+            if (previous == null) return null;
+
+            ExportManifest manifest = load(pathFor(previous));
+            if (manifest == null || !compression.equals(manifest.compression)) return null;
+            try {
+                return new Baseline(previous, manifest);
+            } catch (IOException e) {
+                LOGGER.warn("Previous export {} is unreadable, rebuilding from scratch", previous, e);
+                return null;
+            }
+        }
+
+        private static Path newestExport(Path folder) {
+            Path newest = null;
+            long newestTime = Long.MIN_VALUE;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*.zip")) {
+                for (Path candidate : stream) {
+                    Path manifestFile = pathFor(candidate);
+                    if (!Files.isRegularFile(manifestFile)) continue;
+                    long time = Files.getLastModifiedTime(manifestFile).toMillis();
+                    if (time > newestTime) {
+                        newest = candidate;
+                        newestTime = time;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to scan {} for a previous export", folder, e);
+            }
+            return newest;
+        }
+
+        public Path getArchive() {
+            return archive;
+        }
+
+        /** @param source CRC of the entry in its source zip, or null if it comes from a folder */
+        public Entry match(String packId, String path, long size, long time, String source) {
+            if (size < 0) return null;
+            Entry previous = manifest.get(path);
+            if (previous == null) return null;
+            if (!previous.pack().equals(packId) || previous.size() != size) return null;
+            // Zip tools often give every entry the same fixed date, so only the CRC tells an edit apart there
+            if (source != null) return source.equals(previous.source()) ? previous : null;
+            if (time < 0 || previous.time() != time) return null;
+            return previous;
+        }
+
+        public ZipArchiveReader.RawEntry getRaw(String path) {
+            ZipArchiveReader.RawEntry entry = reader.get(path);
+            return entry != null && entry.isCopyable() ? entry : null;
+        }
+
+        public byte[] readRaw(ZipArchiveReader.RawEntry entry) throws IOException {
+            return reader.readRaw(entry);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.GSON;
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+public class ExportMetrics {
+    public static final String SUFFIX = ".report.json";
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final int HISTORY_REPORTS = 5;
+
+    private final String target;
+    private final long startedAt = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, PackMetrics> packs = new LinkedHashMap<>();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicInteger entriesWritten = new AtomicInteger();
+    private final AtomicInteger entriesVanilla = new AtomicInteger();
+    private volatile int entriesPlanned;
+    private volatile String phase = "listing";
+    private volatile long finishNanos;
+    private long peakQueueBytes;
+    private int reusedEntries;
+
+    public static class PackMetrics {
+        private final String id;
+        private int listed;
+        private int shadowed;
+        private int uppercase;
+        private int filtered;
+        private final AtomicInteger written = new AtomicInteger();
+        private final AtomicInteger vanilla = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final AtomicLong cpuNanos = new AtomicLong();
+        private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+        private PackMetrics(String id) {
+            this.id = id;
+        }
+
+        public void addRead(long bytes) {
+            bytesRead.addAndGet(bytes);
+        }
+
+        public void addError() {
+            errors.incrementAndGet();
+        }
+
+        public void chunkDone(long startNanos, long cpuNanos) {
+            this.cpuNanos.addAndGet(cpuNanos);
+            firstStart.accumulateAndGet(startNanos, Math::min);
+            lastEnd.accumulateAndGet(System.nanoTime(), Math::max);
+        }
+    }
+
+    public ExportMetrics(Path target) {
+        this.target = target.toString();
+    }
+
+    public static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    public static Path pathFor(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + SUFFIX);
+    }
+
+    /** Output throughput of the newest finished exports in {@code folder}, or 0 if it has no reports. */
+    public static double pastThroughputMBs(Path folder) {
+        List<Path> reports = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + SUFFIX)) {
+            for (Path report : stream) reports.add(report);
+        } catch (IOException e) {
+            return 0;
+        }
+        reports.sort(Comparator.comparing(ExportMetrics::lastModified).reversed());
+
+        long bytes = 0;
+        long millis = 0;
+        for (Path file : reports.subList(0, Math.min(HISTORY_REPORTS, reports.size()))) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                Report report = GSON.fromJson(reader, Report.class);
+                if (report == null || report.wallMillis <= 0) continue;
+                bytes += report.bytesWritten;
+                millis += report.wallMillis;
+            } catch (Exception e) {
+                LOGGER.debug("Ignoring unreadable report {}", file, e);
+            }
+        }
+        return millis > 0 ? bytes / 1024.0 / 1024.0 / (millis / 1000.0) : 0;
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public synchronized void planned(ExportPlan plan) {
+        for (ExportPlan.PackPlan packPlan : plan.getPacks()) {
+            PackMetrics metrics = new PackMetrics(packPlan.getId());
+            metrics.listed = packPlan.getListedCount();
+            metrics.shadowed = packPlan.getShadowedCount();
+            metrics.uppercase = packPlan.getUppercaseCount();
+            metrics.filtered = packPlan.getFilteredCount();
+            packs.put(packPlan.getId(), metrics);
+        }
+        entriesPlanned = plan.getEntryCount();
+        phase = "writing";
+    }
+
+    public PackMetrics pack(String id) {
+        return packs.get(id);
+    }
+
+    public void written(PackMetrics pack, long bytes) {
+        pack.written.incrementAndGet();
+        pack.bytesWritten.addAndGet(bytes);
+        entriesWritten.incrementAndGet();
+        bytesWritten.addAndGet(bytes);
+    }
+
+    public void skippedVanilla(PackMetrics pack) {
+        pack.vanilla.incrementAndGet();
+        entriesVanilla.incrementAndGet();
+    }
+
+    public synchronized void finish(long peakQueueBytes, int reusedEntries) {
+        this.finishNanos = System.nanoTime();
+        this.peakQueueBytes = peakQueueBytes;
+        this.reusedEntries = reusedEntries;
+        this.phase = "done";
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public int getEntriesWritten() {
+        return entriesWritten.get();
+    }
+
+    public int getEntriesDone() {
+        return entriesWritten.get() + entriesVanilla.get();
+    }
+
+    public int getEntriesPlanned() {
+        return entriesPlanned;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public synchronized long getPeakQueueBytes() {
+        return peakQueueBytes;
+    }
+
+    public double getThroughputMBs() {
+        long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+        double seconds = Math.max(1e-9, (end - startNanos) / 1e9);
+        return bytesWritten.get() / 1024.0 / 1024.0 / seconds;
+    }
+
+    public synchronized void save(Path file) throws IOException {
+        Report report = new Report();
+        report.target = target;
+        report.startedAt = Instant.ofEpochMilli(startedAt).toString();
+        report.wallMillis = ((finishNanos != 0 ? finishNanos : System.nanoTime()) - startNanos) / 1_000_000;
+        report.entriesPlanned = entriesPlanned;
+        report.entriesWritten = entriesWritten.get();
+        report.entriesReused = reusedEntries;
+        report.entriesVanilla = entriesVanilla.get();
+        report.bytesWritten = bytesWritten.get();
+        report.throughputMBs = Math.round(getThroughputMBs() * 100) / 100.0;
+        report.peakQueueBytes = peakQueueBytes;
+
+        for (PackMetrics pack : packs.values()) {
+            PackReport packReport = new PackReport();
+            packReport.id = pack.id;
+            packReport.listed = pack.listed;
+            packReport.written = pack.written.get();
+            packReport.shadowed = pack.shadowed;
+            packReport.vanilla = pack.vanilla.get();
+            packReport.uppercase = pack.uppercase;
+            packReport.filtered = pack.filtered;
+            packReport.errors = pack.errors.get();
+            packReport.bytesRead = pack.bytesRead.get();
+            packReport.bytesWritten = pack.bytesWritten.get();
+            packReport.cpuMillis = pack.cpuNanos.get() / 1_000_000;
+            packReport.wallMillis = pack.lastEnd.get() < pack.firstStart.get() ? 0 : (pack.lastEnd.get() - pack.firstStart.get()) / 1_000_000;
+            report.cpuMillis += packReport.cpuMillis;
+            report.packs.add(packReport);
+        }
+
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            GSON.toJson(report, writer);
+        }
+    }
+
+    private static class Report {
+        String target;
+        String startedAt;
+        long wallMillis;
+        long cpuMillis;
+        int entriesPlanned;
+        int entriesWritten;
+        int entriesReused;
+        int entriesVanilla;
+        long bytesWritten;
+        double throughputMBs;
+        long peakQueueBytes;
+        List<PackReport> packs = new ArrayList<>();
+    }
+
+    private static class PackReport {
+        String id;
+        int listed;
+        int written;
+        int shadowed;
+        int vanilla;
+        int uppercase;
+        int filtered;
+        int errors;
+        long bytesRead;
+        long bytesWritten;
+        long wallMillis;
+        long cpuMillis;
+    }
+}
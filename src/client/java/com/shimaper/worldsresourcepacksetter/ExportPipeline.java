@@ -0,0 +1,176 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Workers fill per-slot queues in parallel, a single consumer drains them in slot order.
+ * The slot being drained may always queue up to the cap on its own, so later slots can't stall it.
+ */
+public class ExportPipeline implements AutoCloseable {
+    private static final Entry END = new Entry(null, 0, 0, 0, new byte[0]);
+
+    private final ExecutorService workers;
+    private final long maxQueuedBytes;
+    private BlockingQueue<Entry>[] queues;
+    private long[] slotBytes;
+    private boolean[] slotFailed;
+
+    private long queuedBytes;
+    private long peakQueuedBytes;
+    private int head;
+    private boolean closed;
+
+    public record Entry(String path, int method, long crc, long size, byte[] data) {}
+
+    @FunctionalInterface
+    public interface Task {
+        void run(Sink sink) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Sink {
+        void accept(Entry entry);
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(Entry entry) throws IOException;
+    }
+
+    public ExportPipeline(int threads, long maxQueuedBytes) {
+        this.maxQueuedBytes = Math.max(1, maxQueuedBytes);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "WRS Export Worker #" + counter.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(WrsCommon.EXPORT_THREAD_PRIORITY);
+            return t;
+        });
+    }
+
+    public static int defaultThreads(int configured) {
+        if (configured > 0) return configured;
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized void allocate(int slots) {
+        this.queues = new BlockingQueue[slots];
+        for (int i = 0; i < slots; i++) queues[i] = new LinkedBlockingQueue<>();
+        this.slotBytes = new long[slots];
+        this.slotFailed = new boolean[slots];
+        this.head = 0;
+    }
+
+    public <S, T> List<T> map(List<S> inputs, Function<S, T> function) throws IOException {
+        List<Future<T>> futures = new ArrayList<>(inputs.size());
+        for (S input : inputs) futures.add(workers.submit(() -> function.apply(input)));
+
+        List<T> results = new ArrayList<>(inputs.size());
+        try {
+            for (Future<T> future : futures) results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        return results;
+    }
+
+    public void submit(int slot, String label, Task task) {
+        workers.execute(() -> {
+            try {
+                task.run(entry -> offer(slot, entry));
+            } catch (CancellationException ignored) {
+                slotFailed[slot] = true;
+            } catch (Exception e) {
+                slotFailed[slot] = true;
+                LOGGER.error("Pack error: {}", label, e);
+            } finally {
+                queues[slot].add(END);
+            }
+        });
+    }
+
+    public boolean drain(int slot, Consumer consumer) throws IOException, InterruptedException {
+        synchronized (this) {
+            head = slot;
+            notifyAll();
+        }
+        BlockingQueue<Entry> queue = queues[slot];
+        while (true) {
+            Entry entry = queue.take();
+            if (entry == END) break;
+            try {
+                consumer.accept(entry);
+            } finally {
+                release(slot, entry.data().length);
+            }
+        }
+        return !slotFailed[slot];
+    }
+
+    public synchronized long getPeakQueuedBytes() {
+        return peakQueuedBytes;
+    }
+
+    private void offer(int slot, Entry entry) {
+        long size = entry.data().length;
+        synchronized (this) {
+            while (!closed && !fits(slot, size)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException();
+                }
+            }
+            if (closed) throw new CancellationException();
+            queuedBytes += size;
+            slotBytes[slot] += size;
+            peakQueuedBytes = Math.max(peakQueuedBytes, queuedBytes);
+        }
+        queues[slot].add(entry);
+    }
+
+    private boolean fits(int slot, long size) {
+        if (queuedBytes + size <= maxQueuedBytes) return true;
+        return slot == head && (slotBytes[slot] == 0 || slotBytes[slot] + size <= maxQueuedBytes);
+    }
+
+    private synchronized void release(int slot, long size) {
+        queuedBytes -= size;
+        slotBytes[slot] -= size;
+        notifyAll();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+public class ExportPlan implements AutoCloseable {
+    private final List<PackPlan> packs;
+    private final Map<String, PackPlan> owners;
+    private int shadowedCount;
+
+    public record PlannedEntry(String path, PackSource.StreamSupplier stream, long size, long time, ZipArchiveReader.RawEntry raw) {}
+
+    public record Chunk(PackPlan pack, List<PlannedEntry> entries) {}
+
+    public static class PackPlan {
+        private final PackSource.SourcePack pack;
+        private final List<PlannedEntry> listed = new ArrayList<>();
+        private final List<PlannedEntry> winners = new ArrayList<>();
+        private PackSource.OpenPack resources;
+        private ZipArchiveReader archive;
+        private int listedCount;
+        private int shadowed;
+        private int uppercase;
+        private int filtered;
+        private boolean failed;
+
+        private PackPlan(PackSource.SourcePack pack) {
+            this.pack = pack;
+        }
+
+        public String getId() {
+            return pack.getId();
+        }
+
+        public Path getLocation() {
+            return pack.getLocation();
+        }
+
+        public List<PlannedEntry> getEntries() {
+            return winners;
+        }
+
+        public int getListedCount() {
+            return listedCount + uppercase + filtered;
+        }
+
+        public int getShadowedCount() {
+            return shadowed;
+        }
+
+        public int getUppercaseCount() {
+            return uppercase;
+        }
+
+        public int getFilteredCount() {
+            return filtered;
+        }
+
+        public ZipArchiveReader getArchive() {
+            return archive;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public void markFailed() {
+            failed = true;
+        }
+    }
+
+    private ExportPlan(List<PackPlan> packs) {
+        this.packs = packs;
+        this.owners = new HashMap<>();
+    }
+
+    public static ExportPlan build(List<PackSource.SourcePack> packs, ResourceFilter filter, ExportPipeline pipeline) throws IOException {
+        List<PackPlan> listed = pipeline.map(packs, pack -> list(pack, filter));
+        ExportPlan plan = new ExportPlan(listed);
+
+        for (PackPlan packPlan : listed) {
+            if (packPlan.failed) continue;
+            packPlan.listedCount = packPlan.listed.size();
+            for (PlannedEntry entry : packPlan.listed) {
+                if (plan.owners.putIfAbsent(entry.path(), packPlan) == null) {
+                    packPlan.winners.add(entry);
+                } else {
+                    packPlan.shadowed++;
+                    plan.shadowedCount++;
+                }
+            }
+            packPlan.listed.clear();
+        }
+
+        LOGGER.info("Planned {} entries from {} packs, skipped {} shadowed entries",
+                plan.owners.size(), listed.size(), plan.shadowedCount);
+        return plan;
+    }
+
+    private static PackPlan list(PackSource.SourcePack pack, ResourceFilter filter) {
+        PackPlan packPlan = new PackPlan(pack);
+        try {
+            PackSource.OpenPack resources = pack.open();
+            packPlan.resources = resources;
+            SourceStats stats = SourceStats.of(pack.getLocation());
+            packPlan.archive = stats.archive();
+            for (String namespace : resources.getNamespaces()) {
+                if (!filter.allowsNamespace(namespace)) continue;
+                resources.listResources(namespace, (path, streamSupplier) -> {
+                    if (hasUppercase(path)) {
+                        packPlan.uppercase++;
+                        return;
+                    }
+                    if (!filter.allows(namespace, path)) {
+                        packPlan.filtered++;
+                        return;
+                    }
+                    packPlan.listed.add(stats.entry(path, streamSupplier));
+                });
+            }
+        } catch (Exception e) {
+            LOGGER.error("Pack error: {}", pack.getId(), e);
+            packPlan.failed = true;
+            packPlan.listed.clear();
+        }
+        return packPlan;
+    }
+
+    private static boolean hasUppercase(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c < 0x80 ? c >= 'A' && c <= 'Z' : Character.toLowerCase(c) != c) return true;
+        }
+        return false;
+    }
+
+    private record SourceStats(Path root, ZipArchiveReader archive, Set<String> overlaid) {
+        static SourceStats of(Path root) {
+            if (root == null) return new SourceStats(null, null, Set.of());
+
+            Set<String> overlaid = new HashSet<>();
+            if (Files.isRegularFile(root)) {
+                try {
+                    ZipArchiveReader archive = new ZipArchiveReader(root);
+                    for (ZipArchiveReader.RawEntry entry : archive.entries()) {
+                        int assets = entry.name().indexOf("/assets/");
+                        if (assets > 0 && !entry.name().startsWith("assets/")) overlaid.add(entry.name().substring(assets + 1));
+                    }
+                    return new SourceStats(root, archive, overlaid);
+                } catch (IOException e) {
+                    LOGGER.debug("Can't index pack archive {}", root, e);
+                    return new SourceStats(null, null, Set.of());
+                }
+            }
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, Files::isDirectory)) {
+                for (Path dir : stream) {
+                    if (!"assets".equals(dir.getFileName().toString()) && Files.isDirectory(dir.resolve("assets"))) {
+                        return new SourceStats(null, null, Set.of());
+                    }
+                }
+            } catch (IOException e) {
+                return new SourceStats(null, null, Set.of());
+            }
+            return new SourceStats(root, null, overlaid);
+        }
+
+        PlannedEntry entry(String path, PackSource.StreamSupplier stream) {
+            if (root == null || overlaid.contains(path)) return new PlannedEntry(path, stream, -1, -1, null);
+
+            if (archive != null) {
+                ZipArchiveReader.RawEntry raw = archive.get(path);
+                if (raw == null) return new PlannedEntry(path, stream, -1, -1, null);
+                return new PlannedEntry(path, stream, raw.size(), raw.time(), raw.isCopyable() ? raw : null);
+            }
+
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(root.resolve(path), BasicFileAttributes.class);
+                return new PlannedEntry(path, stream, attrs.size(), attrs.lastModifiedTime().toMillis(), null);
+            } catch (IOException e) {
+                return new PlannedEntry(path, stream, -1, -1, null);
+            }
+        }
+    }
+
+    public List<PackPlan> getPacks() {
+        return packs;
+    }
+
+    public int getEntryCount() {
+        return owners.size();
+    }
+
+    public int getShadowedCount() {
+        return shadowedCount;
+    }
+
+    public List<Chunk> chunks(int chunkSize) {
+        List<Chunk> chunks = new ArrayList<>();
+        for (PackPlan packPlan : packs) {
+            List<PlannedEntry> entries = packPlan.winners;
+            for (int i = 0; i < entries.size(); i += chunkSize) {
+                chunks.add(new Chunk(packPlan, entries.subList(i, Math.min(entries.size(), i + chunkSize))));
+            }
+        }
+        return chunks;
+    }
+
+    @Override
+    public void close() {
+        for (PackPlan packPlan : packs) {
+            try {
+                if (packPlan.resources != null) packPlan.resources.close();
+                if (packPlan.archive != null) packPlan.archive.close();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to close pack {}", packPlan.getId(), e);
+            }
+        }
+    }
+}
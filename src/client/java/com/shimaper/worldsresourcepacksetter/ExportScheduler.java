@@ -0,0 +1,110 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Runs exports one at a time on a dedicated low-priority thread. A request for a target that is
+ * already queued or running replaces any request still waiting for that target instead of piling up.
+ */
+public class ExportScheduler {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "WRS Export");
+        t.setDaemon(true);
+        t.setPriority(WrsCommon.EXPORT_THREAD_PRIORITY);
+        return t;
+    });
+    private final Map<Path, Job> jobs = new HashMap<>();
+
+    public enum Result { STARTED, COALESCED }
+
+    @FunctionalInterface
+    public interface Task {
+        void run(Job job) throws Exception;
+    }
+
+    public static class Job {
+        private final Path target;
+        private Task next;
+        private Thread thread;
+        private volatile boolean cancelled;
+
+        private Job(Path target, Task next) {
+            this.target = target;
+            this.next = next;
+        }
+
+        public Path getTarget() {
+            return target;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void checkCancelled() {
+            if (cancelled) throw new CancellationException("Export cancelled");
+        }
+    }
+
+    public synchronized Result submit(Path target, Task task) {
+        Job job = jobs.get(target);
+        if (job != null && !job.cancelled) {
+            job.next = task;
+            return Result.COALESCED;
+        }
+
+        Job created = new Job(target, task);
+        jobs.put(target, created);
+        executor.execute(() -> run(created));
+        return Result.STARTED;
+    }
+
+    public synchronized int cancelAll() {
+        int count = 0;
+        for (Job job : jobs.values()) {
+            if (job.cancelled) continue;
+            job.cancelled = true;
+            job.next = null;
+            if (job.thread != null) job.thread.interrupt();
+            count++;
+        }
+        return count;
+    }
+
+    private void run(Job job) {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                task = job.next;
+                job.next = null;
+                if (job.cancelled || task == null) {
+                    finish(job);
+                    return;
+                }
+                job.thread = Thread.currentThread();
+            }
+
+            try {
+                task.run(job);
+            } catch (Exception e) {
+                LOGGER.error("Export job for {} failed", job.target, e);
+            } finally {
+                synchronized (this) {
+                    job.thread = null;
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    private void finish(Job job) {
+        if (jobs.get(job.target) == job) jobs.remove(job.target);
+    }
+}
@@ -0,0 +1,184 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Packs read straight from folders and zip files on disk, without a running client.
+ */
+public class FolderPackSource implements PackSource {
+    private final List<SourcePack> packs = new ArrayList<>();
+    private final Path vanilla;
+
+    public FolderPackSource(List<Path> locations) {
+        this(locations, null);
+    }
+
+    /** @param vanilla client jar or extracted assets folder holding the vanilla resources, may be {@code null} */
+    public FolderPackSource(List<Path> locations, Path vanilla) {
+        List<Path> normalized = new ArrayList<>();
+        for (Path location : locations) normalized.add(location.toAbsolutePath().normalize());
+        List<String> ids = uniqueIds(normalized);
+        for (int i = 0; i < normalized.size(); i++) packs.add(new FolderPack(ids.get(i), normalized.get(i)));
+        this.vanilla = vanilla == null ? null : vanilla.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public List<SourcePack> getPacks() {
+        return packs;
+    }
+
+    @Override
+    public SourcePack getVanilla() {
+        return vanilla == null ? null : new FolderPack("vanilla", vanilla);
+    }
+
+    @Override
+    public String getVanillaVersion() {
+        if (vanilla == null) return null;
+        try {
+            return vanilla.getFileName() + "-" + Files.size(vanilla) + "-" + Files.getLastModifiedTime(vanilla).toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * {@code file/<name>} for every pack, with as many parent folders as it takes to tell packs of the same name
+     * apart ({@code file/v1/base}, {@code file/v2/base}). Ids end up in manifests, so they must not depend on anything
+     * but the paths.
+     */
+    private static List<String> uniqueIds(List<Path> locations) {
+        int[] depth = new int[locations.size()];
+        Arrays.fill(depth, 1);
+        List<String> ids = new ArrayList<>();
+        while (true) {
+            ids.clear();
+            Map<String, List<Integer>> byId = new HashMap<>();
+            for (int i = 0; i < locations.size(); i++) {
+                Path location = locations.get(i);
+                int count = location.getNameCount();
+                String id = count == 0 ? location.toString() : location.subpath(Math.max(0, count - depth[i]), count).toString().replace('\\', '/');
+                ids.add("file/" + id);
+                byId.computeIfAbsent(ids.get(i), key -> new ArrayList<>()).add(i);
+            }
+
+            boolean deeper = false;
+            for (List<Integer> same : byId.values()) {
+                if (same.stream().map(locations::get).distinct().count() < 2) continue;
+                for (int i : same) {
+                    if (depth[i] < locations.get(i).getNameCount()) {
+                        depth[i]++;
+                        deeper = true;
+                    }
+                }
+            }
+            if (!deeper) break;
+        }
+
+        // Only the same location given twice is left
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            for (int n = 2; !seen.add(id); n++) id = ids.get(i) + "#" + n;
+            ids.set(i, id);
+        }
+        return ids;
+    }
+
+    private record FolderPack(String id, Path location) implements SourcePack {
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public Path getLocation() {
+            return location;
+        }
+
+        @Override
+        public OpenPack open() throws IOException {
+            if (Files.isDirectory(location)) return new DirectoryPack(location.resolve("assets"));
+            if (Files.isRegularFile(location)) return new ArchivePack(new ZipFile(location.toFile()));
+            throw new IOException("Pack not found: " + location);
+        }
+    }
+
+    private record DirectoryPack(Path assets) implements OpenPack {
+        @Override
+        public Set<String> getNamespaces() {
+            Set<String> namespaces = new LinkedHashSet<>();
+            if (!Files.isDirectory(assets)) return namespaces;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(assets, Files::isDirectory)) {
+                for (Path dir : stream) namespaces.add(dir.getFileName().toString());
+            } catch (IOException e) {
+                LOGGER.warn("Failed to list namespaces in {}", assets, e);
+            }
+            return namespaces;
+        }
+
+        @Override
+        public void listResources(String namespace, ResourceOutput output) throws IOException {
+            Path root = assets.resolve(namespace);
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                    String relative = root.relativize(file).toString().replace('\\', '/');
+                    output.accept("assets/" + namespace + "/" + relative, () -> Files.newInputStream(file));
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private record ArchivePack(ZipFile zipFile) implements OpenPack {
+        @Override
+        public Set<String> getNamespaces() {
+            Set<String> namespaces = new LinkedHashSet<>();
+            zipFile.stream().forEach(entry -> {
+                String name = entry.getName();
+                if (!name.startsWith("assets/")) return;
+                int slash = name.indexOf('/', "assets/".length());
+                if (slash > "assets/".length()) namespaces.add(name.substring("assets/".length(), slash));
+            });
+            return namespaces;
+        }
+
+        @Override
+        public void listResources(String namespace, ResourceOutput output) {
+            String prefix = "assets/" + namespace + "/";
+            zipFile.stream().forEach(entry -> {
+                if (entry.isDirectory() || !entry.getName().startsWith(prefix)) return;
+                ZipEntry current = entry;
+                output.accept(entry.getName(), () -> zipFile.getInputStream(current));
+            });
+        }
+
+        @Override
+        public void close() {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close {}", zipFile.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import com.google.gson.reflect.TypeToken;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.GSON;
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Builds world resource archives from pack folders and zips without starting the game.
+ * Packs are given highest priority first, the same order as the in-game selected list.
+ */
+public class HeadlessExporter {
+    private static final String USAGE = """
+            Usage: HeadlessExporter [options] --output <file.zip> <pack> [<pack>...]
+                   HeadlessExporter [options] --batch <jobs.json>
+
+            Options:
+              --threads <n>           export worker threads (default: cores - 1)
+              --level <0-9>           deflate level for compressible assets (default: 6)
+              --description <text>    pack.mcmeta description
+              --include <rule>        only export matching resources, e.g. minecraft:textures/** (repeatable)
+              --exclude <rule>        skip matching resources, e.g. minecraft:sounds/** or *.psd (repeatable)
+              --vanilla <client.jar>  drop entries identical to the vanilla resources in this jar or folder
+              --minify                strip whitespace and comments from .json and .mcmeta files
+              --png                   losslessly recompress .png files, cached by content
+
+            jobs.json: [{"output": "a/resources.zip", "packs": ["packs/top.zip", "packs/base"], "description": "...", "vanilla": "client.jar"}]
+            """;
+
+    private static final Path CACHE_DIR = Paths.get(System.getProperty("java.io.tmpdir"), "wrs_cache");
+
+    public static class Job {
+        public String output;
+        public List<String> packs = new ArrayList<>();
+        public String description;
+        public String vanilla;
+    }
+
+    public static void main(String[] args) throws Exception {
+        WrsCommon.ModConfig config = new WrsCommon.ModConfig();
+        List<Job> jobs = new ArrayList<>();
+        Job single = new Job();
+        String vanilla = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--output" -> single.output = value(args, ++i);
+                case "--threads" -> config.exportThreads = Integer.parseInt(value(args, ++i));
+                case "--level" -> config.compressionLevel = Integer.parseInt(value(args, ++i));
+                case "--description" -> config.customDescription = value(args, ++i);
+                case "--include" -> config.includeRules.add(value(args, ++i));
+                case "--exclude" -> config.excludeRules.add(value(args, ++i));
+                case "--vanilla" -> vanilla = value(args, ++i);
+                case "--minify" -> config.minifyJson = true;
+                case "--png" -> config.recompressPng = true;
+                case "--batch" -> jobs.addAll(readBatch(Paths.get(value(args, ++i))));
+                case "--help", "-h" -> {
+                    System.out.println(USAGE);
+                    return;
+                }
+                default -> {
+                    if (arg.startsWith("--")) fail("Unknown option " + arg);
+                    single.packs.add(arg);
+                }
+            }
+        }
+        if (single.output != null) jobs.add(single);
+        else if (!single.packs.isEmpty()) fail("--output is required");
+        if (jobs.isEmpty()) fail("Nothing to export");
+
+        int failed = 0;
+        for (Job job : jobs) {
+            if (job.vanilla == null) job.vanilla = vanilla;
+            if (!run(job, config)) failed++;
+        }
+        if (failed > 0) System.exit(1);
+    }
+
+    public static boolean run(Job job, WrsCommon.ModConfig baseConfig) {
+        WrsCommon.ModConfig config = GSON.fromJson(GSON.toJson(baseConfig), WrsCommon.ModConfig.class);
+        if (job.description != null) config.customDescription = job.description;
+        Path vanilla = job.vanilla == null ? null : Paths.get(job.vanilla);
+        if (vanilla != null) config.overridesOnly = true;
+
+        Path targetFile = Paths.get(job.output).toAbsolutePath().normalize();
+        List<Path> packs = new ArrayList<>();
+        for (String pack : job.packs) packs.add(Paths.get(pack));
+
+        PackExporter exporter = new PackExporter(() -> config, CACHE_DIR);
+        ExportMetrics metrics = new ExportMetrics(targetFile);
+        try {
+            Files.createDirectories(targetFile.getParent());
+            PackExporter.ExportResult result;
+            Path part = ArchiveChecksum.partFor(targetFile);
+            try {
+                try (ZipArchiveWriter zip = new ZipArchiveWriter(Files.newOutputStream(part))) {
+                    result = exporter.export(new FolderPackSource(packs, vanilla), targetFile, zip, metrics);
+                    exporter.createPackMcmeta(zip);
+                }
+                ArchiveChecksum.commit(part, targetFile, ExportPipeline.defaultThreads(config.exportThreads));
+            } finally {
+                Files.deleteIfExists(part);
+            }
+            exporter.writeSidecars(targetFile, result);
+            System.out.printf(Locale.ROOT, "%s: %d packs, %d entries, %.1f MB/s%n", targetFile, result.packCount(),
+                    metrics.getEntriesWritten(), metrics.getThroughputMBs());
+            return true;
+        } catch (Exception e) {
+            // The target is only replaced once the new archive is complete, so the last good export stays
+            LOGGER.error("Headless export to {} failed", targetFile, e);
+            return false;
+        }
+    }
+
+    private static List<Job> readBatch(Path file) throws Exception {
+        try (Reader reader = Files.newBufferedReader(file)) {
+            List<Job> jobs = GSON.fromJson(reader, new TypeToken<List<Job>>() {}.getType());
+            Path base = file.toAbsolutePath().getParent();
+            for (Job job : jobs) {
+                if (job.output == null) fail("Batch job without output in " + file);
+                job.output = base.resolve(job.output).toString();
+                job.packs.replaceAll(pack -> base.resolve(pack).toString());
+                if (job.vanilla != null) job.vanilla = base.resolve(job.vanilla).toString();
+            }
+            return jobs;
+        }
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) fail("Missing value for " + args[index - 1]);
+        return args[index];
+    }
+
+    private static void fail(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,91 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Re-serializes JSON models, blockstates, lang files and .mcmeta without whitespace or comments.
+ * Tokens are copied one by one, so no tree is built; number literals are written back verbatim.
+ * Anything that isn't a single well-formed (lenient) JSON document, or doesn't get smaller, is kept as is.
+ */
+public class JsonMinifier implements AssetTransform {
+    @Override
+    public String getKey() {
+        return "minify";
+    }
+
+    @Override
+    public boolean appliesTo(String path) {
+        return path.endsWith(".json") || path.endsWith(".mcmeta");
+    }
+
+    @Override
+    public byte[] apply(String path, byte[] data) {
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data),
+                    StandardCharsets.UTF_8.newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPORT)
+                            .onUnmappableCharacter(CodingErrorAction.REPORT)));
+            reader.setStrictness(Strictness.LENIENT);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.setHtmlSafe(false);
+            copy(reader, writer);
+            if (reader.peek() != JsonToken.END_DOCUMENT) return data;
+            writer.flush();
+
+            byte[] result = out.toByteArray();
+            return result.length < data.length ? result : data;
+        } catch (IOException | RuntimeException e) {
+            return data;
+        }
+    }
+
+    private static void copy(JsonReader reader, JsonWriter writer) throws IOException {
+        int depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_ARRAY -> {
+                    reader.beginArray();
+                    writer.beginArray();
+                    depth++;
+                }
+                case END_ARRAY -> {
+                    reader.endArray();
+                    writer.endArray();
+                    depth--;
+                }
+                case BEGIN_OBJECT -> {
+                    reader.beginObject();
+                    writer.beginObject();
+                    depth++;
+                }
+                case END_OBJECT -> {
+                    reader.endObject();
+                    writer.endObject();
+                    depth--;
+                }
+                case NAME -> writer.name(reader.nextName());
+                case STRING -> writer.value(reader.nextString());
+                case NUMBER -> writer.jsonValue(reader.nextString());
+                case BOOLEAN -> writer.value(reader.nextBoolean());
+                case NULL -> {
+                    reader.nextNull();
+                    writer.nullValue();
+                }
+                case END_DOCUMENT -> throw new MalformedJsonException("Unexpected end of document");
+            }
+        } while (depth > 0);
+    }
+}
@@ -1,83 +1,327 @@
 package com.shimaper.worldsresourcepacksetter;
 
 import com.google.gson.JsonObject;
-import net.minecraft.client.Minecraft;
-import net.minecraft.server.packs.PackResources;
-import net.minecraft.server.packs.PackType;
-import net.minecraft.server.packs.repository.Pack;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
 
 import static com.shimaper.worldsresourcepacksetter.WrsCommon.GSON;
 import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
 
 public class PackExporter {
-    private final ConfigManager configManager;
-
-    public PackExporter(ConfigManager configManager) {
-        this.configManager = configManager;
-    }
-
-    public int processResourcePacks(String compatibility, String source, ZipOutputStream zos) {
-        List<Pack> selectedPacks = new ArrayList<>(Minecraft.getInstance().getResourcePackRepository().getSelectedPacks());
-        Collections.reverse(selectedPacks);
-
-        boolean force = "force".equalsIgnoreCase(compatibility);
-        boolean isExternalOnly = "external".equalsIgnoreCase(source);
-        boolean includeVanilla = configManager.getConfig().includeVanilla;
-
-        int successCount = 0;
-        for (Pack pack : selectedPacks) {
-            String id = pack.getId();
-            if (!includeVanilla && "vanilla".equals(id)) continue;
-            if ("file/resources.zip".equals(id) || "resources.zip".equals(id)) continue;
-            if (!force && !pack.getCompatibility().isCompatible()) continue;
-            if (isExternalOnly && !id.startsWith("file/")) continue;
-
-            try (PackResources resources = pack.open()) {
-                for (String namespace : resources.getNamespaces(PackType.CLIENT_RESOURCES)) {
-                    resources.listResources(PackType.CLIENT_RESOURCES, namespace, "", (location, streamSupplier) -> {
-                        String path = "assets/" + location.getNamespace() + "/" + location.getPath();
-                        if (!path.equals(path.toLowerCase(Locale.ROOT))) return;
-                        try (InputStream is = streamSupplier.get()) {
-                            writeToZip(zos, path, is);
-                        } catch (IOException ignored) {}
-                    });
+    private static final int CHUNK_SIZE = 256;
+    private static final long PLAN_TTL_MILLIS = 120_000;
+
+    private final Supplier<WrsCommon.ModConfig> config;
+    private final Path cacheDir;
+    private volatile VanillaIndex vanillaIndex;
+    private CachedPlan cachedPlan;
+
+    private record CachedPlan(String key, ExportPlan plan, long createdAt) {}
+
+    public PackExporter(Supplier<WrsCommon.ModConfig> config) {
+        this(config, null);
+    }
+
+    /** @param cacheDir where derived data such as the vanilla index is kept between runs, may be {@code null} */
+    public PackExporter(Supplier<WrsCommon.ModConfig> config, Path cacheDir) {
+        this.config = config;
+        this.cacheDir = cacheDir;
+    }
+
+    public record ExportResult(int packCount, ExportManifest manifest, ExportMetrics metrics) {}
+
+    public ExportResult processResourcePacks(String compatibility, String source, Path targetFile, ZipArchiveWriter zip,
+                                             ExportMetrics metrics) throws IOException {
+        WrsCommon.ModConfig cfg = config.get();
+        PackSource packSource = new RepositoryPackSource(compatibility, source, cfg.includeVanilla && !cfg.overridesOnly);
+        return export(packSource, targetFile, zip, metrics);
+    }
+
+    /**
+     * Lists the packs like an export would, without opening a single resource, and estimates the result.
+     * The listing is kept for a short while so that an export of the same packs can start writing right away.
+     */
+    public ExportEstimate plan(String compatibility, String source, Path targetFile) throws IOException {
+        WrsCommon.ModConfig cfg = config.get();
+        PackSource packSource = new RepositoryPackSource(compatibility, source, cfg.includeVanilla && !cfg.overridesOnly);
+        return plan(packSource, targetFile);
+    }
+
+    public ExportEstimate plan(PackSource packSource, Path targetFile) throws IOException {
+        List<PackSource.SourcePack> packs = packSource.getPacks();
+        WrsCommon.ModConfig cfg = config.get();
+        ExportPipeline pipeline = new ExportPipeline(ExportPipeline.defaultThreads(cfg.exportThreads), 1);
+        try {
+            ExportPlan plan = ExportPlan.build(packs, ResourceFilter.compile(cfg.includeRules, cfg.excludeRules), pipeline);
+            Path folder = targetFile.toAbsolutePath().getParent();
+            ExportEstimate estimate = ExportEstimate.of(plan, CompressionPolicy.of(cfg), ExportMetrics.pastThroughputMBs(folder));
+            cachePlan(new CachedPlan(planKey(packs, cfg), plan, System.currentTimeMillis()));
+            return estimate;
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    public ExportResult export(PackSource packSource, Path targetFile, ZipArchiveWriter zip, ExportMetrics metrics) throws IOException {
+        List<PackSource.SourcePack> packs = packSource.getPacks();
+        WrsCommon.ModConfig cfg = config.get();
+        int threads = ExportPipeline.defaultThreads(cfg.exportThreads);
+        long queueBytes = Math.max(1, cfg.exportQueueMegabytes) * 1024L * 1024L;
+
+        CompressionPolicy policy = CompressionPolicy.of(cfg);
+        AtomicInteger reusedCount = new AtomicInteger();
+        ExportPipeline pipeline = new ExportPipeline(threads, queueBytes);
+        ExportManifest.Baseline baseline = null;
+        ExportPlan plan = null;
+        try {
+            VanillaIndex vanilla = cfg.overridesOnly ? loadVanilla(packSource, pipeline) : null;
+            List<AssetTransform> transforms = transforms(cfg);
+            String key = policy.getKey();
+            if (vanilla != null) key += ";overrides=" + vanilla.getVersion();
+            for (AssetTransform transform : transforms) key += ";" + transform.getKey();
+            ExportManifest manifest = new ExportManifest(key);
+            baseline = ExportManifest.Baseline.find(targetFile, key);
+
+            plan = takeCachedPlan(planKey(packs, cfg));
+            if (plan == null) plan = ExportPlan.build(packs, ResourceFilter.compile(cfg.includeRules, cfg.excludeRules), pipeline);
+            metrics.planned(plan);
+            List<ExportPlan.Chunk> chunks = plan.chunks(CHUNK_SIZE);
+            pipeline.allocate(chunks.size());
+
+            ExportManifest.Baseline reuse = baseline;
+            for (int i = 0; i < chunks.size(); i++) {
+                ExportPlan.Chunk chunk = chunks.get(i);
+                ExportMetrics.PackMetrics packMetrics = metrics.pack(chunk.pack().getId());
+                pipeline.submit(i, chunk.pack().getId(),
+                        sink -> readChunk(chunk, policy, reuse, vanilla, transforms, manifest, reusedCount, metrics, packMetrics, sink));
+            }
+            for (int i = 0; i < chunks.size(); i++) {
+                ExportMetrics.PackMetrics packMetrics = metrics.pack(chunks.get(i).pack().getId());
+                if (!pipeline.drain(i, entry -> writeToZip(zip, entry, metrics, packMetrics))) {
+                    chunks.get(i).pack().markFailed();
+                }
+            }
+            metrics.finish(pipeline.getPeakQueuedBytes(), reusedCount.get());
+
+            if (baseline != null) {
+                LOGGER.info("Reused {} of {} entries from {}", reusedCount.get(), plan.getEntryCount(), baseline.getArchive().getFileName());
+            }
+
+            int successCount = 0;
+            for (ExportPlan.PackPlan packPlan : plan.getPacks()) {
+                if (!packPlan.isFailed()) successCount++;
+            }
+            return new ExportResult(successCount, manifest, metrics);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } finally {
+            pipeline.close();
+            if (plan != null) plan.close();
+            if (baseline != null) baseline.close();
+        }
+    }
+
+    private static String planKey(List<PackSource.SourcePack> packs, WrsCommon.ModConfig cfg) {
+        StringBuilder key = new StringBuilder();
+        for (PackSource.SourcePack pack : packs) {
+            key.append(pack.getId()).append('=').append(pack.getLocation()).append('@').append(stamp(pack.getLocation())).append(';');
+        }
+        return key.append("include=").append(cfg.includeRules).append(";exclude=").append(cfg.excludeRules).toString();
+    }
+
+    /** Modification time and size of a pack zip or folder, so a replaced zip or a changed folder listing is noticed. */
+    private static String stamp(Path location) {
+        if (location == null) return "-";
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(location, BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toMillis() + "/" + attributes.size();
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+
+    /** Drops the listing kept from {@code /setResources plan}, for when the packs are known to have changed. */
+    public synchronized void invalidatePlan() {
+        if (cachedPlan == null) return;
+        cachedPlan.plan().close();
+        cachedPlan = null;
+    }
+
+    private synchronized void cachePlan(CachedPlan plan) {
+        if (cachedPlan != null) cachedPlan.plan().close();
+        cachedPlan = plan;
+        // The listing keeps the pack zips open, let go of them if no export comes
+        CompletableFuture.delayedExecutor(PLAN_TTL_MILLIS, TimeUnit.MILLISECONDS).execute(() -> expirePlan(plan));
+    }
+
+    private synchronized void expirePlan(CachedPlan plan) {
+        if (cachedPlan != plan) return;
+        cachedPlan = null;
+        plan.plan().close();
+    }
+
+    private synchronized ExportPlan takeCachedPlan(String key) {
+        CachedPlan cached = cachedPlan;
+        if (cached == null) return null;
+        cachedPlan = null;
+        if (cached.key().equals(key) && System.currentTimeMillis() - cached.createdAt() < PLAN_TTL_MILLIS) {
+            LOGGER.info("Reusing the listing from /setResources plan");
+            return cached.plan();
+        }
+        cached.plan().close();
+        return null;
+    }
+
+    private List<AssetTransform> transforms(WrsCommon.ModConfig cfg) {
+        List<AssetTransform> transforms = new ArrayList<>();
+        if (cfg.minifyJson) transforms.add(new JsonMinifier());
+        if (cfg.recompressPng) transforms.add(new PngOptimizer(cacheDir));
+        return transforms;
+    }
+
+    private VanillaIndex loadVanilla(PackSource packSource, ExportPipeline pipeline) throws IOException {
+        PackSource.SourcePack vanillaPack = packSource.getVanilla();
+        String version = packSource.getVanillaVersion();
+        if (vanillaPack == null || version == null) {
+            LOGGER.warn("Vanilla resources unavailable, exporting without dropping unchanged copies");
+            return null;
+        }
+
+        VanillaIndex cached = vanillaIndex;
+        if (cached != null && cached.getVersion().equals(version)) return cached;
+        vanillaIndex = VanillaIndex.load(vanillaPack, version, cacheDir, pipeline);
+        return vanillaIndex;
+    }
+
+    public void writeSidecars(Path targetFile, ExportResult result) {
+        try {
+            result.manifest().save(ExportManifest.pathFor(targetFile));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write export manifest for {}", targetFile, e);
+        }
+        try {
+            result.metrics().save(ExportMetrics.pathFor(targetFile));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write export report for {}", targetFile, e);
+        }
+    }
+
+    private void readChunk(ExportPlan.Chunk chunk, CompressionPolicy policy, ExportManifest.Baseline baseline,
+                           VanillaIndex vanilla, List<AssetTransform> transforms, ExportManifest manifest, AtomicInteger reusedCount, ExportMetrics metrics,
+                           ExportMetrics.PackMetrics packMetrics, ExportPipeline.Sink sink) {
+        String packId = chunk.pack().getId();
+        ZipArchiveReader packArchive = chunk.pack().getArchive();
+        long startNanos = System.nanoTime();
+        long startCpu = ExportMetrics.cpuTime();
+
+        for (ExportPlan.PlannedEntry entry : chunk.entries()) {
+            try {
+                ZipArchiveReader.RawEntry raw = entry.raw();
+                String source = raw == null ? null : ExportManifest.hash(raw.crc());
+                ExportManifest.Entry previous = baseline == null ? null : baseline.match(packId, entry.path(), entry.size(), entry.time(), source);
+                ZipArchiveReader.RawEntry reused = previous == null ? null : baseline.getRaw(entry.path());
+
+                if (reused != null && ExportManifest.hash(reused.crc()).equals(previous.hash())) {
+                    byte[] payload = null;
+                    try {
+                        payload = baseline.readRaw(reused);
+                    } catch (IOException e) {
+                        LOGGER.debug("Failed to reuse {} from the previous export, reading it from {}", entry.path(), packId, e);
+                    }
+                    if (payload != null) {
+                        packMetrics.addRead(payload.length);
+                        sink.accept(new ExportPipeline.Entry(entry.path(), reused.method(), reused.crc(), reused.size(), payload));
+                        manifest.put(entry.path(), previous);
+                        reusedCount.incrementAndGet();
+                        continue;
+                    }
+                }
+
+                List<AssetTransform> applicable = applicable(transforms, entry.path());
+                if (raw != null && applicable.isEmpty()) {
+                    if (vanilla != null && vanilla.matches(entry.path(), raw.size(), raw.crc(), () -> packArchive.read(raw))) {
+                        metrics.skippedVanilla(packMetrics);
+                        continue;
+                    }
+                    byte[] payload = packArchive.readRaw(raw);
+                    packMetrics.addRead(payload.length);
+                    if (raw.method() == ZipArchiveWriter.STORED) {
+                        sink.accept(policy.compress(entry.path(), payload, raw.crc()));
+                    } else {
+                        sink.accept(new ExportPipeline.Entry(entry.path(), raw.method(), raw.crc(), raw.size(), payload));
+                    }
+                    manifest.put(entry.path(), new ExportManifest.Entry(packId, entry.size(), entry.time(), source, source));
+                    continue;
                 }
-                successCount++;
-            } catch (Exception e) { LOGGER.error("Pack error: {}", id, e); }
+
+                byte[] data;
+                try (InputStream is = entry.stream().get()) {
+                    data = is.readAllBytes();
+                }
+                packMetrics.addRead(data.length);
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                if (vanilla != null && vanilla.matches(entry.path(), data.length, crc.getValue(), () -> data)) {
+                    metrics.skippedVanilla(packMetrics);
+                    continue;
+                }
+                byte[] output = data;
+                for (AssetTransform transform : applicable) output = transform.apply(entry.path(), output);
+                if (output != data) {
+                    crc.reset();
+                    crc.update(output);
+                }
+                sink.accept(policy.compress(entry.path(), output, crc.getValue()));
+                manifest.put(entry.path(), new ExportManifest.Entry(packId, entry.size(), entry.time(), ExportManifest.hash(crc.getValue()), source));
+            } catch (IOException e) {
+                packMetrics.addError();
+                LOGGER.debug("Failed to read {} from {}", entry.path(), packId, e);
+            }
         }
-        return successCount;
+        packMetrics.chunkDone(startNanos, ExportMetrics.cpuTime() - startCpu);
     }
 
-    public void createPackMcmeta(ZipOutputStream zos) throws IOException {
+    private static List<AssetTransform> applicable(List<AssetTransform> transforms, String path) {
+        if (transforms.isEmpty()) return transforms;
+        List<AssetTransform> applicable = new ArrayList<>(transforms.size());
+        for (AssetTransform transform : transforms) {
+            if (transform.appliesTo(path)) applicable.add(transform);
+        }
+        return applicable;
+    }
+
+    public void createPackMcmeta(ZipArchiveWriter zip) throws IOException {
         JsonObject root = new JsonObject();
         JsonObject packObj = new JsonObject();
         packObj.addProperty("pack_format", 34);
         JsonObject descObj = new JsonObject();
-        descObj.addProperty("text", configManager.getConfig().customDescription);
+        descObj.addProperty("text", config.get().customDescription);
         packObj.add("description", descObj);
         root.add("pack", packObj);
 
-        ZipEntry entry = new ZipEntry("pack.mcmeta");
-        zos.putNextEntry(entry);
-        zos.write(GSON.toJson(root).getBytes(StandardCharsets.UTF_8));
-        zos.closeEntry();
+        zip.writeStored("pack.mcmeta", GSON.toJson(root).getBytes(StandardCharsets.UTF_8));
     }
 
-    private void writeToZip(ZipOutputStream zos, String path, InputStream is) throws IOException {
+    private void writeToZip(ZipArchiveWriter zip, ExportPipeline.Entry entry, ExportMetrics metrics,
+                            ExportMetrics.PackMetrics packMetrics) throws IOException {
         try {
-            zos.putNextEntry(new ZipEntry(path));
-            is.transferTo(zos);
-            zos.closeEntry();
-        } catch (Exception ignored) {}
+            zip.writeEntry(entry.path(), entry.method(), entry.crc(), entry.size(), entry.data());
+            metrics.written(packMetrics, entry.data().length);
+        } catch (ZipException e) {
+            packMetrics.addError();
+            LOGGER.warn("Skipping entry {}: {}", entry.path(), e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ordered set of packs to export, highest priority first.
+ */
+public interface PackSource {
+    List<SourcePack> getPacks();
+
+    /** Vanilla client resources, used to drop unchanged copies in override-only exports. {@code null} if unavailable. */
+    default SourcePack getVanilla() {
+        return null;
+    }
+
+    /** Identifies the vanilla resources so their index can be cached, usually the game version. */
+    default String getVanillaVersion() {
+        return null;
+    }
+
+    interface SourcePack {
+        String getId();
+
+        /** Folder or zip behind the pack, or {@code null} when the pack isn't backed by a plain file. */
+        Path getLocation();
+
+        OpenPack open() throws IOException;
+    }
+
+    interface OpenPack extends AutoCloseable {
+        Set<String> getNamespaces();
+
+        void listResources(String namespace, ResourceOutput output) throws IOException;
+
+        @Override
+        void close();
+    }
+
+    @FunctionalInterface
+    interface ResourceOutput {
+        void accept(String path, StreamSupplier stream);
+    }
+
+    @FunctionalInterface
+    interface StreamSupplier {
+        InputStream get() throws IOException;
+    }
+}
@@ -0,0 +1,165 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Watches the folders and zips behind a set of packs and calls back once a burst of relevant changes has settled.
+ * The watch thread blocks on the {@link WatchService} while nothing happens, and the callback runs on it,
+ * so it should only hand work off.
+ */
+public class PackWatcher implements Closeable {
+    private final WatchService service;
+    private final ResourceFilter filter;
+    private final long debounceMillis;
+    private final Runnable onChange;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Map<Path, Path> folderRoots = new HashMap<>();
+    private final Set<Path> archives = new HashSet<>();
+    private final Thread thread;
+
+    /** @param packs folder or zip of each pack; {@code onChange} is called on the watch thread */
+    public PackWatcher(List<Path> packs, ResourceFilter filter, long debounceMillis, Runnable onChange) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.filter = filter;
+        this.debounceMillis = Math.max(50, debounceMillis);
+        this.onChange = onChange;
+        try {
+            for (Path pack : packs) {
+                Path absolute = pack.toAbsolutePath().normalize();
+                if (Files.isDirectory(absolute)) {
+                    registerTree(absolute, absolute);
+                } else if (absolute.getParent() != null) {
+                    archives.add(absolute);
+                    register(absolute.getParent(), null);
+                }
+            }
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+
+        thread = new Thread(this::run, "WRS Watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getWatchedFolderCount() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+        try {
+            service.close();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to close pack watcher", e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!handle(service.take())) continue;
+                // Editors save in bursts (temp file, rename, metadata), wait for a quiet period before exporting
+                WatchKey more;
+                while ((more = service.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) handle(more);
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Pack watcher callback failed", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            LOGGER.debug("Pack watcher stopped");
+        }
+    }
+
+    private boolean handle(WatchKey key) {
+        Path dir;
+        synchronized (keys) {
+            dir = keys.get(key);
+        }
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                relevant = true;
+                continue;
+            }
+            if (dir == null) continue;
+            Path child = dir.resolve((Path) event.context());
+            if (archives.contains(child)) {
+                relevant = true;
+                continue;
+            }
+
+            Path root = folderRoots.get(dir);
+            if (root == null) continue;
+            boolean directory = Files.isDirectory(child);
+            if (directory && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                try {
+                    registerTree(root, child);
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to watch {}", child, e);
+                }
+            }
+            relevant |= isRelevant(root.relativize(child).toString().replace('\\', '/'), directory);
+        }
+
+        if (!key.reset()) {
+            synchronized (keys) {
+                folderRoots.remove(keys.remove(key));
+            }
+        }
+        return relevant;
+    }
+
+    private boolean isRelevant(String relative, boolean directory) {
+        String name = relative.substring(relative.lastIndexOf('/') + 1);
+        if (name.startsWith(".") || name.endsWith("~") || name.endsWith(".tmp") || name.endsWith(".swp")) return false;
+        if (relative.equals("pack.mcmeta") || relative.equals("assets")) return true;
+        if (!relative.startsWith("assets/")) return false;
+
+        int slash = relative.indexOf('/', "assets/".length());
+        String namespace = slash < 0 ? relative.substring("assets/".length()) : relative.substring("assets/".length(), slash);
+        if (!filter.allowsNamespace(namespace)) return false;
+        // A deleted folder can't be told apart from a file any more, so extensionless names count as folders
+        if (slash < 0 || directory || name.indexOf('.') < 0) return true;
+        return filter.allows(namespace, relative);
+    }
+
+    private void registerTree(Path root, Path start) throws IOException {
+        try (Stream<Path> dirs = Files.walk(start)) {
+            for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) register(dir, root);
+        }
+    }
+
+    private void register(Path dir, Path root) throws IOException {
+        WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        synchronized (keys) {
+            keys.put(key, dir);
+            if (root != null) folderRoots.put(dir, root);
+        }
+    }
+}
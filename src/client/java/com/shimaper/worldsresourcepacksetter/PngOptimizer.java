@@ -0,0 +1,177 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Losslessly shrinks PNGs: ancillary chunks other than {@code tRNS} are dropped and the image data is
+ * re-deflated at the best level as a single {@code IDAT}. Scanlines and their filters are copied as they are,
+ * so decoded pixels stay bit-exact. Results are cached on disk by the SHA-256 of the input.
+ */
+public class PngOptimizer implements AssetTransform {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IDAT = type("IDAT");
+    private static final int IEND = type("IEND");
+    private static final int TRNS = type("tRNS");
+    private static final int ACTL = type("acTL");
+
+    private final Path cacheDir;
+
+    /** @param cacheDir export cache folder, may be {@code null} to recompress every time */
+    public PngOptimizer(Path cacheDir) {
+        this.cacheDir = cacheDir == null ? null : cacheDir.resolve("png");
+    }
+
+    @Override
+    public String getKey() {
+        return "png";
+    }
+
+    @Override
+    public boolean appliesTo(String path) {
+        return path.endsWith(".png");
+    }
+
+    @Override
+    public byte[] apply(String path, byte[] data) {
+        Path cached = null;
+        if (cacheDir != null) {
+            String hash = HexFormat.of().formatHex(sha256(data));
+            cached = cacheDir.resolve(hash.substring(0, 2)).resolve(hash + ".png");
+            try {
+                byte[] result = Files.readAllBytes(cached);
+                // An empty entry records that the input couldn't be improved.
+                return result.length == 0 ? data : result;
+            } catch (IOException ignored) {
+            }
+        }
+
+        byte[] result;
+        try {
+            result = optimize(data);
+        } catch (IOException | RuntimeException e) {
+            result = data;
+        }
+        if (cached != null) store(cached, result == data ? new byte[0] : result);
+        return result;
+    }
+
+    private static byte[] optimize(byte[] data) throws IOException {
+        if (data.length < SIGNATURE.length || !ByteBuffer.wrap(data, 0, SIGNATURE.length).equals(ByteBuffer.wrap(SIGNATURE))) {
+            return data;
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(data, SIGNATURE.length, data.length - SIGNATURE.length);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        DataOutputStream chunks = new DataOutputStream(out);
+        chunks.write(SIGNATURE);
+        boolean idatWritten = false;
+        boolean ended = false;
+        CRC32 crc = new CRC32();
+
+        while (!ended && in.remaining() >= 12) {
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining() - 8) return data;
+            int start = in.position();
+            int type = in.getInt();
+            crc.reset();
+            crc.update(data, start, length + 4);
+            if ((int) crc.getValue() != ByteBuffer.wrap(data, start + length + 4, 4).getInt()) return data;
+            in.position(start + length + 8);
+
+            // Animated PNGs carry frames in ancillary chunks, leave them alone.
+            if (type == ACTL) return data;
+            if (type == IDAT) {
+                // IDAT chunks have to be consecutive; one after the merged chunk means a broken or odd file.
+                if (idatWritten) return data;
+                compressed.write(data, start + 4, length);
+                continue;
+            }
+            if (compressed.size() > 0 && !idatWritten) {
+                byte[] idat = recompress(compressed.toByteArray());
+                writeChunk(chunks, IDAT, idat, 0, idat.length);
+                idatWritten = true;
+            }
+            boolean critical = (type & 0x20000000) == 0;
+            if (critical || type == TRNS) writeChunk(chunks, type, data, start + 4, length);
+            ended = type == IEND;
+        }
+        if (!ended || !idatWritten) return data;
+
+        byte[] result = out.toByteArray();
+        return result.length < data.length ? result : data;
+    }
+
+    private static byte[] recompress(byte[] zlib) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (InputStream raw = new InflaterInputStream(new ByteArrayInputStream(zlib))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(zlib.length);
+            try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater, 64 * 1024)) {
+                raw.transferTo(deflate);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, int type, byte[] data, int offset, int length) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(new byte[]{(byte) (type >>> 24), (byte) (type >>> 16), (byte) (type >>> 8), (byte) type});
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.writeInt(type);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void store(Path file, byte[] result) {
+        Path temp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(temp, result);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to cache optimized PNG {}", file, e);
+            try {
+                if (temp != null) Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static int type(String name) {
+        return name.charAt(0) << 24 | name.charAt(1) << 16 | name.charAt(2) << 8 | name.charAt(3);
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
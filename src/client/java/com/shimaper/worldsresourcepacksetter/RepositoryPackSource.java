@@ -0,0 +1,88 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.client.Minecraft;
+import net.minecraft.server.packs.PackResources;
+import net.minecraft.server.packs.PackType;
+import net.minecraft.server.packs.repository.Pack;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class RepositoryPackSource implements PackSource {
+    private final List<SourcePack> packs = new ArrayList<>();
+
+    public RepositoryPackSource(String compatibility, String source, boolean includeVanilla) {
+        List<Pack> selectedPacks = new ArrayList<>(Minecraft.getInstance().getResourcePackRepository().getSelectedPacks());
+        Collections.reverse(selectedPacks);
+
+        boolean force = "force".equalsIgnoreCase(compatibility);
+        boolean isExternalOnly = "external".equalsIgnoreCase(source);
+        Path packDirectory = Minecraft.getInstance().getResourcePackDirectory();
+
+        for (Pack pack : selectedPacks) {
+            String id = pack.getId();
+            if (!includeVanilla && "vanilla".equals(id)) continue;
+            if ("file/resources.zip".equals(id) || "resources.zip".equals(id)) continue;
+            if (!force && !pack.getCompatibility().isCompatible()) continue;
+            if (isExternalOnly && !id.startsWith("file/")) continue;
+
+            Path location = id.startsWith("file/") ? packDirectory.resolve(id.substring("file/".length())) : null;
+            packs.add(new RepositoryPack(pack, location));
+        }
+    }
+
+    @Override
+    public List<SourcePack> getPacks() {
+        return packs;
+    }
+
+    @Override
+    public SourcePack getVanilla() {
+        Pack vanilla = Minecraft.getInstance().getResourcePackRepository().getPack("vanilla");
+        return vanilla == null ? null : new RepositoryPack(vanilla, null);
+    }
+
+    @Override
+    public String getVanillaVersion() {
+        return FabricLoader.getInstance().getModContainer("minecraft")
+                .map(mod -> mod.getMetadata().getVersion().getFriendlyString())
+                .orElse(null);
+    }
+
+    private record RepositoryPack(Pack pack, Path location) implements SourcePack {
+        @Override
+        public String getId() {
+            return pack.getId();
+        }
+
+        @Override
+        public Path getLocation() {
+            return location;
+        }
+
+        @Override
+        public OpenPack open() {
+            PackResources resources = pack.open();
+            return new OpenPack() {
+                @Override
+                public Set<String> getNamespaces() {
+                    return resources.getNamespaces(PackType.CLIENT_RESOURCES);
+                }
+
+                @Override
+                public void listResources(String namespace, ResourceOutput output) {
+                    resources.listResources(PackType.CLIENT_RESOURCES, namespace, "", (location, streamSupplier) ->
+                            output.accept("assets/" + location.getNamespace() + "/" + location.getPath(), streamSupplier::get));
+                }
+
+                @Override
+                public void close() {
+                    resources.close();
+                }
+            };
+        }
+    }
+}
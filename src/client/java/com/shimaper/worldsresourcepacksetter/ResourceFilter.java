@@ -0,0 +1,269 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Include/exclude rules for exported resources, compiled once per export.
+ * <p>
+ * A rule is {@code namespace:glob} ({@code minecraft:sounds/**}), {@code namespace:} for a whole namespace,
+ * or a bare glob matched in every namespace. Globs without a {@code /} match the file name ({@code *.psd}),
+ * a trailing {@code /} or {@code /**} matches a whole folder.
+ * {@code *} stays within a folder, {@code **} crosses folders, {@code ?} is one character and
+ * {@code {a,b}} picks an alternative. An empty include list includes everything; excludes win over includes.
+ */
+public class ResourceFilter {
+    public static final ResourceFilter ALL = new ResourceFilter(new RuleSet(), new RuleSet());
+    private static final String ANY_NAMESPACE = "*";
+
+    private final RuleSet includes;
+    private final RuleSet excludes;
+
+    private ResourceFilter(RuleSet includes, RuleSet excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    public static ResourceFilter compile(List<String> includeRules, List<String> excludeRules) {
+        RuleSet includes = new RuleSet();
+        RuleSet excludes = new RuleSet();
+        if (includeRules != null) for (String rule : includeRules) includes.add(rule);
+        if (excludeRules != null) for (String rule : excludeRules) excludes.add(rule);
+        return includes.isEmpty() && excludes.isEmpty() ? ALL : new ResourceFilter(includes, excludes);
+    }
+
+    /** Checks a rule's syntax, returning the problem or {@code null} if it compiles. */
+    public static String validate(String rule) {
+        try {
+            new RuleSet().add(rule);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    public boolean isEmpty() {
+        return this == ALL;
+    }
+
+    /** Namespaces that can't contain a single exported resource, so they needn't be listed at all. */
+    public boolean allowsNamespace(String namespace) {
+        if (excludes.coversNamespace(namespace)) return false;
+        return includes.isEmpty() || includes.touchesNamespace(namespace);
+    }
+
+    /** @param path full archive path, {@code assets/<namespace>/<path>} */
+    public boolean allows(String namespace, String path) {
+        if (this == ALL) return true;
+        int start = "assets/".length() + namespace.length() + 1;
+        if (excludes.matches(namespace, path, start)) return false;
+        return includes.isEmpty() || includes.matches(namespace, path, start);
+    }
+
+    private static class RuleSet {
+        private final Map<String, Rules> byNamespace = new HashMap<>();
+        private final List<Pattern> namespacePatterns = new ArrayList<>();
+        private final List<Rules> patternRules = new ArrayList<>();
+
+        void add(String rule) {
+            String trimmed = rule == null ? "" : rule.trim();
+            if (trimmed.isEmpty()) throw new IllegalArgumentException("empty rule");
+
+            int colon = trimmed.indexOf(':');
+            String namespace = colon < 0 ? ANY_NAMESPACE : trimmed.substring(0, colon);
+            String glob = colon < 0 ? trimmed : trimmed.substring(colon + 1);
+            if (namespace.isEmpty()) throw new IllegalArgumentException("missing namespace before ':'");
+            if (glob.startsWith("/")) glob = glob.substring(1);
+
+            Rules rules;
+            if (namespace.equals(ANY_NAMESPACE) || !isGlob(namespace)) {
+                rules = byNamespace.computeIfAbsent(namespace, key -> new Rules());
+            } else {
+                namespacePatterns.add(Pattern.compile(toRegex(namespace)));
+                rules = new Rules();
+                patternRules.add(rules);
+            }
+            rules.add(glob);
+        }
+
+        boolean isEmpty() {
+            return byNamespace.isEmpty() && patternRules.isEmpty();
+        }
+
+        boolean coversNamespace(String namespace) {
+            Rules any = byNamespace.get(ANY_NAMESPACE);
+            if (any != null && any.everything) return true;
+            Rules own = byNamespace.get(namespace);
+            if (own != null && own.everything) return true;
+            for (int i = 0; i < namespacePatterns.size(); i++) {
+                if (patternRules.get(i).everything && namespacePatterns.get(i).matcher(namespace).matches()) return true;
+            }
+            return false;
+        }
+
+        boolean touchesNamespace(String namespace) {
+            if (byNamespace.containsKey(ANY_NAMESPACE) || byNamespace.containsKey(namespace)) return true;
+            for (Pattern pattern : namespacePatterns) {
+                if (pattern.matcher(namespace).matches()) return true;
+            }
+            return false;
+        }
+
+        boolean matches(String namespace, String path, int start) {
+            Rules any = byNamespace.get(ANY_NAMESPACE);
+            if (any != null && any.matches(path, start)) return true;
+            Rules own = byNamespace.get(namespace);
+            if (own != null && own.matches(path, start)) return true;
+            for (int i = 0; i < namespacePatterns.size(); i++) {
+                if (namespacePatterns.get(i).matcher(namespace).matches() && patternRules.get(i).matches(path, start)) return true;
+            }
+            return false;
+        }
+    }
+
+    /** Globs of one namespace, split by shape: folder prefixes go in a trie, literals and plain suffixes are compared in place. */
+    private static class Rules {
+        private final PrefixTrie prefixes = new PrefixTrie();
+        private final List<String> exact = new ArrayList<>();
+        private final List<String> exactNames = new ArrayList<>();
+        private final List<String> nameSuffixes = new ArrayList<>();
+        private final List<Pattern> namePatterns = new ArrayList<>();
+        private final List<Pattern> pathPatterns = new ArrayList<>();
+        private boolean everything;
+
+        void add(String glob) {
+            if (glob.isEmpty() || glob.equals("**")) {
+                everything = true;
+            } else if (glob.indexOf('/') < 0) {
+                if (!isGlob(glob)) exactNames.add(glob);
+                else if (glob.startsWith("*") && !isGlob(glob.substring(1))) nameSuffixes.add(glob.substring(1));
+                else namePatterns.add(Pattern.compile(toRegex(glob)));
+            } else if (glob.endsWith("/") && !isGlob(glob)) {
+                prefixes.add(glob);
+            } else if (glob.endsWith("/**") && !isGlob(glob.substring(0, glob.length() - 3))) {
+                prefixes.add(glob.substring(0, glob.length() - 2));
+            } else if (!isGlob(glob)) {
+                exact.add(glob);
+            } else {
+                pathPatterns.add(Pattern.compile(toRegex(glob)));
+            }
+        }
+
+        boolean matches(String path, int start) {
+            if (everything || prefixes.matches(path, start)) return true;
+            int length = path.length() - start;
+            for (String value : exact) {
+                if (value.length() == length && path.startsWith(value, start)) return true;
+            }
+
+            int nameStart = Math.max(start, path.lastIndexOf('/') + 1);
+            int nameLength = path.length() - nameStart;
+            for (String name : exactNames) {
+                if (name.length() == nameLength && path.startsWith(name, nameStart)) return true;
+            }
+            for (String suffix : nameSuffixes) {
+                if (path.length() - suffix.length() >= nameStart && path.endsWith(suffix)) return true;
+            }
+            for (Pattern pattern : namePatterns) {
+                if (pattern.matcher(path).region(nameStart, path.length()).matches()) return true;
+            }
+            for (Pattern pattern : pathPatterns) {
+                if (pattern.matcher(path).region(start, path.length()).matches()) return true;
+            }
+            return false;
+        }
+    }
+
+    private static class PrefixTrie {
+        private final Node root = new Node();
+
+        private static class Node {
+            char[] keys = new char[0];
+            Node[] children = new Node[0];
+            boolean terminal;
+
+            Node child(char key) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] == key) return children[i];
+                }
+                return null;
+            }
+
+            Node addChild(char key) {
+                Node existing = child(key);
+                if (existing != null) return existing;
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = key;
+                return children[children.length - 1] = new Node();
+            }
+        }
+
+        void add(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) node = node.addChild(prefix.charAt(i));
+            node.terminal = true;
+        }
+
+        boolean matches(String path, int start) {
+            Node node = root;
+            for (int i = start; i < path.length(); i++) {
+                node = node.child(path.charAt(i));
+                if (node == null) return false;
+                if (node.terminal) return true;
+            }
+            return false;
+        }
+    }
+
+    private static boolean isGlob(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '*' || c == '?' || c == '{') return true;
+        }
+        return false;
+    }
+
+    private static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int braces = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        i++;
+                        if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+                            i++;
+                            regex.append("(?:.*/)?");
+                        } else {
+                            regex.append(".*");
+                        }
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '{' -> {
+                    braces++;
+                    regex.append("(?:");
+                }
+                case '}' -> {
+                    if (--braces < 0) throw new IllegalArgumentException("unbalanced '}' in " + glob);
+                    regex.append(')');
+                }
+                case ',' -> regex.append(braces > 0 ? "|" : ",");
+                default -> {
+                    if ("\\.[]()^$+|".indexOf(c) >= 0) regex.append('\\');
+                    regex.append(c);
+                }
+            }
+        }
+        if (braces != 0) throw new IllegalArgumentException("unbalanced '{' in " + glob);
+        return regex.toString();
+    }
+}
@@ -0,0 +1,165 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
+
+/**
+ * Size, CRC-32 and SHA-256 of every vanilla client resource, cached on disk per game version.
+ * Size and CRC pick candidates cheaply; only candidates are hashed in full.
+ */
+public class VanillaIndex {
+    private static final int FORMAT = 1;
+    private static final int HASH_BATCH = 512;
+
+    private record Digest(long size, int crc, long high, long low) {}
+
+    private record Resource(String path, PackSource.StreamSupplier stream) {}
+
+    @FunctionalInterface
+    public interface DataSupplier {
+        byte[] get() throws IOException;
+    }
+
+    private final String version;
+    private final Map<String, Digest> digests;
+
+    private VanillaIndex(String version, Map<String, Digest> digests) {
+        this.version = version;
+        this.digests = digests;
+    }
+
+    public static VanillaIndex load(PackSource.SourcePack vanilla, String version, Path cacheDir, ExportPipeline pipeline) throws IOException {
+        Path cacheFile = cacheDir == null ? null : cacheDir.resolve("vanilla-" + version.replaceAll("[^A-Za-z0-9._-]", "_") + ".idx");
+        if (cacheFile != null && Files.isRegularFile(cacheFile)) {
+            try {
+                return read(version, cacheFile);
+            } catch (IOException e) {
+                LOGGER.warn("Rebuilding unreadable vanilla index {}", cacheFile, e);
+            }
+        }
+
+        long start = System.nanoTime();
+        VanillaIndex index = build(vanilla, version, pipeline);
+        LOGGER.info("Indexed {} vanilla resources for {} in {} ms", index.size(), version, (System.nanoTime() - start) / 1_000_000);
+        if (cacheFile != null) {
+            try {
+                index.write(cacheFile);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to cache vanilla index to {}", cacheFile, e);
+            }
+        }
+        return index;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return digests.size();
+    }
+
+    public boolean matches(String path, long size, long crc, DataSupplier data) throws IOException {
+        Digest digest = digests.get(path);
+        if (digest == null || digest.size() != size || digest.crc() != (int) crc) return false;
+
+        ByteBuffer hash = ByteBuffer.wrap(sha256(data.get()));
+        return hash.getLong() == digest.high() && hash.getLong() == digest.low();
+    }
+
+    private static VanillaIndex build(PackSource.SourcePack vanilla, String version, ExportPipeline pipeline) throws IOException {
+        List<Resource> resources = new ArrayList<>();
+        try (PackSource.OpenPack pack = vanilla.open()) {
+            for (String namespace : pack.getNamespaces()) {
+                pack.listResources(namespace, (path, stream) -> resources.add(new Resource(path, stream)));
+            }
+
+            List<List<Resource>> batches = new ArrayList<>();
+            for (int i = 0; i < resources.size(); i += HASH_BATCH) {
+                batches.add(resources.subList(i, Math.min(resources.size(), i + HASH_BATCH)));
+            }
+
+            Map<String, Digest> digests = new HashMap<>(resources.size() * 2);
+            for (Map<String, Digest> batch : pipeline.map(batches, VanillaIndex::hashBatch)) digests.putAll(batch);
+            return new VanillaIndex(version, digests);
+        }
+    }
+
+    private static Map<String, Digest> hashBatch(List<Resource> batch) {
+        Map<String, Digest> digests = new HashMap<>(batch.size() * 2);
+        for (Resource resource : batch) {
+            try (InputStream in = resource.stream().get()) {
+                byte[] data = in.readAllBytes();
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                ByteBuffer hash = ByteBuffer.wrap(sha256(data));
+                digests.put(resource.path(), new Digest(data.length, (int) crc.getValue(), hash.getLong(), hash.getLong()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return digests;
+    }
+
+    private static VanillaIndex read(String version, Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT || !version.equals(in.readUTF())) throw new IOException("Stale vanilla index");
+            int count = in.readInt();
+            Map<String, Digest> digests = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                digests.put(in.readUTF(), new Digest(in.readLong(), in.readInt(), in.readLong(), in.readLong()));
+            }
+            return new VanillaIndex(version, digests);
+        }
+    }
+
+    private void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FORMAT);
+            out.writeUTF(version);
+            out.writeInt(digests.size());
+            for (Map.Entry<String, Digest> entry : digests.entrySet()) {
+                Digest digest = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(digest.size());
+                out.writeInt(digest.crc());
+                out.writeLong(digest.high());
+                out.writeLong(digest.low());
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,54 +1,107 @@
 package com.shimaper.worldsresourcepacksetter;
 
-import net.fabricmc.loader.api.FabricLoader;
+import java.io.IOException;
 import java.nio.file.*;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
 
 public class WorldResourceManager {
+    private static final int APPLY_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long APPLY_TIMEOUT_SECONDS = 60;
+
     private final ConfigManager configManager;
-    private final Path mcRoot = FabricLoader.getInstance().getGameDir().toAbsolutePath().normalize();
+    private final Path mcRoot;
+    private final BlobStore blobStore;
+    private volatile CompletableFuture<Void> pendingApply = CompletableFuture.completedFuture(null);
+    private final ExecutorService pruneExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WRS Prune");
+        thread.setDaemon(true);
+        thread.setPriority(WrsCommon.EXPORT_THREAD_PRIORITY);
+        return thread;
+    });
 
     public WorldResourceManager(ConfigManager configManager) {
         this.configManager = configManager;
+        this.mcRoot = configManager.getGameDir();
+        this.blobStore = new BlobStore(mcRoot);
     }
 
-    public void checkPendingWorldsOnStart() {
-        Iterator<String> iterator = configManager.getConfig().pendingWorlds.iterator();
-        boolean changed = false;
+    public CompletableFuture<Void> applyPendingWorldsAsync() {
+        List<String> pending = configManager.getPendingWorlds();
+        boolean hasBlobs = Files.isDirectory(blobStore.getRoot());
+        if (pending.isEmpty() && !hasBlobs || !pendingApply.isDone()) return pendingApply;
 
-        while (iterator.hasNext()) {
-            String pathStr = iterator.next();
-            Path worldPath = mcRoot.resolve(pathStr).toAbsolutePath().normalize();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(APPLY_THREADS, pending.size())), runnable -> {
+            Thread thread = new Thread(runnable, "WRS Apply #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(WrsCommon.EXPORT_THREAD_PRIORITY);
+            return thread;
+        });
 
-            if (Files.exists(worldPath)) {
-                if (tryCleanAndApplyLatest(worldPath)) {
-                    iterator.remove();
-                    changed = true;
-                    LOGGER.info("[WRS] Applied resources to: {}", pathStr);
-                }
-            } else {
-                iterator.remove();
-                changed = true;
-            }
+        List<String> finished = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<?>[] worlds = pending.stream()
+                .map(pathStr -> CompletableFuture.runAsync(() -> {
+                    if (applyPendingWorld(pathStr)) finished.add(pathStr);
+                }, executor))
+                .toArray(CompletableFuture[]::new);
+
+        pendingApply = CompletableFuture.allOf(worlds).whenCompleteAsync((ignored, error) -> {
+            executor.shutdown();
+            if (error != null) LOGGER.error("Applying pending worlds failed", error);
+            configManager.removePendingWorlds(finished);
+            if (hasBlobs) blobStore.collectGarbage();
+        }, executor);
+        return pendingApply;
+    }
+
+    public void awaitPendingWorlds() {
+        CompletableFuture<Void> apply = pendingApply;
+        if (apply.isDone()) return;
+
+        LOGGER.info("Waiting for pending world resources before opening a world");
+        try {
+            apply.get(APPLY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Pending world resources were not applied in time", e);
         }
-        if (changed) configManager.save();
     }
 
-    public Path resolveExportPath(Path currentWorldPath) {
-        WrsCommon.ModConfig cfg = configManager.getConfig();
-        Path targetFolder;
+    private boolean applyPendingWorld(String pathStr) {
+        Path worldPath = mcRoot.resolve(pathStr).toAbsolutePath().normalize();
+        if (!Files.exists(worldPath)) return true;
+
+        if (tryCleanAndApplyLatest(worldPath)) {
+            LOGGER.info("[WRS] Applied resources to: {}", pathStr);
+            return true;
+        }
+        return false;
+    }
 
+    /** The folder exports for this world go to, without creating it. */
+    public Path getTargetFolder(Path currentWorldPath) {
+        WrsCommon.ModConfig cfg = configManager.getConfig();
         if (cfg.savePath == null || cfg.savePath.trim().isEmpty()) {
-            targetFolder = currentWorldPath;
-        } else {
-            targetFolder = Paths.get(cfg.savePath).toAbsolutePath().normalize();
+            return currentWorldPath;
         }
+        return Paths.get(cfg.savePath).toAbsolutePath().normalize();
+    }
+
+    public Path resolveTargetFolder(Path currentWorldPath) {
+        Path targetFolder = getTargetFolder(currentWorldPath);
 
         try {
             if (!Files.exists(targetFolder)) {
@@ -58,19 +111,24 @@ public class WorldResourceManager {
             LOGGER.error("Failed to create target directory", e);
             return null;
         }
+        return targetFolder;
+    }
 
-        if (Files.exists(targetFolder.resolve("level.dat"))) {
-            Path mainResources = targetFolder.resolve("resources.zip");
-
-            if (!Files.exists(mainResources)) {
-                return mainResources;
-            }
+    public Path resolveExportPath(Path currentWorldPath) {
+        Path targetFolder = resolveTargetFolder(currentWorldPath);
+        if (targetFolder == null) return null;
+        return exportPath(targetFolder, true);
+    }
 
-            String prefix = cfg.customFileName;
-            if (prefix == null || prefix.isEmpty()) prefix = WrsCommon.DEFAULT_FILENAME;
-            if (prefix.endsWith(".zip")) prefix = prefix.substring(0, prefix.length() - 4);
+    /** The path the next export would be written to, without creating folders or reserving the name. */
+    public Path peekExportPath(Path currentWorldPath) {
+        return exportPath(getTargetFolder(currentWorldPath), false);
+    }
 
-            return findNextIndexedPath(targetFolder, prefix + "_");
+    private Path exportPath(Path targetFolder, boolean reserve) {
+        WrsCommon.ModConfig cfg = configManager.getConfig();
+        if (Files.exists(targetFolder.resolve("level.dat"))) {
+            return worldExportPath(targetFolder, reserve);
         }
 
         else {
@@ -82,22 +140,134 @@ public class WorldResourceManager {
 
             if (Files.exists(targetFile)) {
                 String nameWithoutExt = fileName.substring(0, fileName.length() - 4);
-                return findNextIndexedPath(targetFolder, nameWithoutExt + "_");
+                return nextPath(targetFolder, nameWithoutExt + "_", reserve);
             }
 
             return targetFile;
         }
     }
 
-    private Path findNextIndexedPath(Path folder, String prefix) {
-        int i = 1;
-        while (Files.exists(folder.resolve(prefix + i + ".zip"))) {
-            i++;
+    public Path resolveWorldExportPath(Path worldFolder) {
+        return worldExportPath(worldFolder, true);
+    }
+
+    private Path worldExportPath(Path worldFolder, boolean reserve) {
+        Path mainResources = worldFolder.resolve("resources.zip");
+
+        if (!Files.exists(mainResources)) {
+            return mainResources;
+        }
+
+        String prefix = configManager.getConfig().customFileName;
+        if (prefix == null || prefix.isEmpty()) prefix = WrsCommon.DEFAULT_FILENAME;
+        if (prefix.endsWith(".zip")) prefix = prefix.substring(0, prefix.length() - 4);
+
+        return nextPath(worldFolder, prefix + "_", reserve);
+    }
+
+    private static Path nextPath(Path folder, String prefix, boolean reserve) {
+        return reserve ? ArchiveIndex.nextPath(folder, prefix) : ArchiveIndex.peekNextPath(folder, prefix);
+    }
+
+    public List<Path> findWorlds(String selector) throws IOException {
+        Path saves = mcRoot.resolve("saves");
+        List<Path> worlds = new ArrayList<>();
+        if (!Files.isDirectory(saves)) return worlds;
+
+        List<PathMatcher> matchers = new ArrayList<>();
+        if (!"all".equalsIgnoreCase(selector)) {
+            for (String pattern : selector.split(",")) {
+                if (!pattern.isBlank()) matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern.trim()));
+            }
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(saves, Files::isDirectory)) {
+            for (Path world : stream) {
+                if (!Files.exists(world.resolve("level.dat"))) continue;
+                Path name = world.getFileName();
+                if (matchers.isEmpty() || matchers.stream().anyMatch(matcher -> matcher.matches(name))) worlds.add(world);
+            }
+        }
+        worlds.sort(null);
+        return worlds;
+    }
+
+    public Path getFanOutFolder() {
+        return mcRoot.resolve("wrs_fanout");
+    }
+
+    public void shareArchive(Path archive, Path world) {
+        if (configManager.getConfig().sharedBlobStore) blobStore.share(archive, world);
+    }
+
+    public int deliver(Path archive, List<Path> worlds) {
+        Path blob = null;
+        if (configManager.getConfig().sharedBlobStore) {
+            try {
+                blob = blobStore.intern(archive);
+            } catch (IOException e) {
+                LOGGER.warn("Could not add {} to the blob store", archive, e);
+            }
+        }
+
+        List<Path> delivered = new ArrayList<>();
+        for (Path world : worlds) {
+            Path target = resolveWorldExportPath(world);
+            try {
+                if (blob == null || !blobStore.linkInto(blob, target, world)) linkOrCopy(archive, target);
+                for (String suffix : WrsCommon.SIDECAR_SUFFIXES) {
+                    Path sidecar = archive.resolveSibling(archive.getFileName() + suffix);
+                    if (Files.exists(sidecar)) linkOrCopy(sidecar, target.resolveSibling(target.getFileName() + suffix));
+                }
+
+                String archiveName = target.getFileName().toString();
+                if (!"resources.zip".equals(archiveName)) ArchiveIndex.record(world, archiveName);
+                delivered.add(world);
+            } catch (Exception e) {
+                LOGGER.error("Failed to deliver {} to {}", archive.getFileName(), world, e);
+                try {
+                    deleteWithSidecars(target);
+                } catch (Exception ignored) {
+                    //
+                }
+            }
+        }
+        configManager.addPendingWorlds(delivered);
+        return delivered.size();
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+            return;
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | IOException e) {
+            LOGGER.debug("Hard link to {} unavailable, copying instead", target, e);
         }
-        return folder.resolve(prefix + i + ".zip");
+        Files.copy(source, target);
     }
 
-    private boolean tryCleanAndApplyLatest(Path worldPath) {
+    /** Applies the configured retention to the archives exported into {@code folder}, off the export thread. */
+    public void pruneAsync(Path folder) {
+        ArchiveIndex.Retention retention = ArchiveIndex.Retention.of(configManager.getConfig());
+        if (retention.isUnlimited()) return;
+        pruneExecutor.execute(() -> {
+            int deleted = ArchiveIndex.prune(folder, retention);
+            if (deleted > 0) LOGGER.info("Pruned {} old archives from {}", deleted, folder);
+        });
+    }
+
+    /** Deletes the pending archives of {@code world} a newer export replaced, except {@code inUse} if it is one of them. */
+    public void dropSupersededAsync(Path world, Path inUse) {
+        String keep = inUse != null && world.equals(inUse.getParent()) ? inUse.getFileName().toString() : null;
+        pruneExecutor.execute(() -> {
+            int deleted = ArchiveIndex.dropSuperseded(world, keep);
+            if (deleted > 0) LOGGER.info("Deleted {} superseded archives from {}", deleted, world);
+        });
+    }
+
+    boolean tryCleanAndApplyLatest(Path worldPath) {
         try {
             WrsCommon.ModConfig cfg = configManager.getConfig();
             String baseName = cfg.customFileName;
@@ -105,40 +275,59 @@ public class WorldResourceManager {
 
             if (baseName.endsWith(".zip")) baseName = baseName.substring(0, baseName.length() - 4);
 
+            // Oldest first
             List<Path> allCandidates = new ArrayList<>();
-            Path latestFile = null;
-            int maxIndex = -1;
-
-            Pattern pattern = Pattern.compile(Pattern.quote(baseName) + "_(\\d+)\\.zip");
-
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(worldPath, baseName + "_*.zip")) {
-                for (Path entry : stream) {
-                    Matcher m = pattern.matcher(entry.getFileName().toString());
-                    if (m.matches()) {
-                        allCandidates.add(entry);
-                        int idx = Integer.parseInt(m.group(1));
-                        if (idx > maxIndex) {
-                            latestFile = entry;
-                            maxIndex = idx;
-                        }
+
+            ArchiveIndex index = ArchiveIndex.load(worldPath);
+            if (index != null) {
+                for (String name : index.getArchives()) {
+                    Path entry = worldPath.resolve(name);
+                    if (Files.exists(entry)) allCandidates.add(entry);
+                }
+            }
+
+            if (allCandidates.isEmpty()) {
+                Pattern pattern = Pattern.compile(Pattern.quote(baseName) + "_(\\d+)\\.zip");
+                TreeMap<Integer, Path> byIndex = new TreeMap<>();
+
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(worldPath, baseName + "_*.zip")) {
+                    for (Path entry : stream) {
+                        Matcher m = pattern.matcher(entry.getFileName().toString());
+                        if (m.matches()) byIndex.put(Integer.parseInt(m.group(1)), entry);
                     }
                 }
+                allCandidates.addAll(byIndex.values());
+            }
+
+            Path latestFile = null;
+            for (int i = allCandidates.size() - 1; i >= 0 && latestFile == null; i--) {
+                Path candidate = allCandidates.get(i);
+                if (ArchiveChecksum.isValid(candidate)) {
+                    latestFile = candidate;
+                } else {
+                    LOGGER.warn("Skipping damaged archive {} in {}", candidate.getFileName(), worldPath);
+                }
+            }
+            if (latestFile == null && !allCandidates.isEmpty()) {
+                for (Path candidate : allCandidates) deleteWithSidecars(candidate);
+                ArchiveIndex.delete(worldPath);
+                return true;
             }
 
             if (latestFile != null) {
-                Path target = worldPath.resolve("resources.zip");
-                Files.deleteIfExists(target);
-                Files.move(latestFile, target);
+                // Replaced in one step: if the old archive is still locked, resources.zip stays as it was
+                moveWithSidecars(latestFile, worldPath.resolve("resources.zip"));
 
                 for (Path candidate : allCandidates) {
                     if (!candidate.equals(latestFile)) {
                         try {
-                            Files.deleteIfExists(candidate);
+                            deleteWithSidecars(candidate);
                         } catch (Exception ignored) {
                             //
                         }
                     }
                 }
+                ArchiveIndex.delete(worldPath);
                 return true;
             }
         } catch (Exception e) {
@@ -146,4 +335,29 @@ public class WorldResourceManager {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    /** Moves an archive over {@code target}, atomically where the file system allows it, and brings its sidecars along. */
+    static void moveWithSidecars(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        for (String suffix : WrsCommon.SIDECAR_SUFFIXES) {
+            Path sidecar = source.resolveSibling(source.getFileName() + suffix);
+            Path targetSidecar = target.resolveSibling(target.getFileName() + suffix);
+            if (Files.exists(sidecar)) {
+                Files.move(sidecar, targetSidecar, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(targetSidecar);
+            }
+        }
+    }
+
+    static void deleteWithSidecars(Path archive) throws IOException {
+        Files.deleteIfExists(archive);
+        for (String suffix : WrsCommon.SIDECAR_SUFFIXES) {
+            Files.deleteIfExists(archive.resolveSibling(archive.getFileName() + suffix));
+        }
+    }
+}
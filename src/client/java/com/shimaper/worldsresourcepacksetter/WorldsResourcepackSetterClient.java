@@ -3,37 +3,168 @@ package com.shimaper.worldsresourcepacksetter;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.screen.v1.ScreenEvents;
 import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
 import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
 import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.screens.GenericMessageScreen;
+import net.minecraft.client.resources.server.DownloadedPackSource;
 import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.network.chat.contents.TranslatableContents;
 import net.minecraft.world.level.storage.LevelResource;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.concurrent.CompletableFuture;
-import java.util.zip.ZipOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
 
 import static com.shimaper.worldsresourcepacksetter.WrsCommon.LOGGER;
 
 public class WorldsResourcepackSetterClient implements ClientModInitializer {
+    private static final String WORLD_LOAD_MESSAGE = "selectWorld.data_read";
+    // Plans queue under their own key so one never replaces an export waiting for the same folder
+    private static final String PLAN_JOB = ".wrs_plan";
     private static WorldsResourcepackSetterClient INSTANCE;
 
     private final ConfigManager configManager = new ConfigManager();
     private final WorldResourceManager worldResourceManager = new WorldResourceManager(configManager);
-    private final PackExporter packExporter = new PackExporter(configManager);
+    private final PackExporter packExporter = new PackExporter(configManager::getConfig, configManager.getGameDir().resolve("wrs_cache"));
+    private final ExportScheduler exportScheduler = new ExportScheduler();
+    private volatile ExportMetrics activeExport;
+    private PackWatcher packWatcher;
+    private volatile Path hotAppliedArchive;
+    private int progressTicks;
 
     @Override
     public void onInitializeClient() {
         INSTANCE = this;
 
         configManager.load();
-        worldResourceManager.checkPendingWorldsOnStart();
+        worldResourceManager.applyPendingWorldsAsync();
+
+        ClientTickEvents.END_CLIENT_TICK.register(this::showProgress);
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> configManager.flush());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            stopWatching();
+            // The hot-applied archive is only swapped in as resources.zip once the world has let go of its packs
+            if (hotAppliedArchive != null) {
+                hotAppliedArchive = null;
+                worldResourceManager.applyPendingWorldsAsync();
+            }
+        });
+        // Opening a world shows "Reading world data" before resources.zip is read, so pending swaps must land first.
+        // Other message screens ("Saving world" and the like) must not wait, they'd freeze the client.
+        ScreenEvents.BEFORE_INIT.register((client, screen, width, height) -> {
+            if (screen instanceof GenericMessageScreen && screen.getTitle().getContents() instanceof TranslatableContents title
+                    && WORLD_LOAD_MESSAGE.equals(title.getKey())) {
+                worldResourceManager.awaitPendingWorlds();
+            }
+        });
 
         ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> {
             dispatcher.register(ClientCommandManager.literal("setResources")
                     .executes(context -> startExport(context, "force", "external"))
+                    .then(ClientCommandManager.literal("cancel")
+                            .executes(this::cancelExports))
+                    .then(ClientCommandManager.literal("plan")
+                            .executes(context -> startPlan(context, "force", "external"))
+                            .then(ClientCommandManager.argument("compatibility", StringArgumentType.word())
+                                    .suggests((context, builder) -> {
+                                        builder.suggest("force");
+                                        builder.suggest("compatible");
+                                        return builder.buildFuture();
+                                    })
+                                    .executes(context -> startPlan(context, StringArgumentType.getString(context, "compatibility"), "external"))
+                                    .then(ClientCommandManager.argument("source", StringArgumentType.word())
+                                            .suggests((context, builder) -> {
+                                                builder.suggest("everything");
+                                                builder.suggest("external");
+                                                return builder.buildFuture();
+                                            })
+                                            .executes(context -> startPlan(context,
+                                                    StringArgumentType.getString(context, "compatibility"),
+                                                    StringArgumentType.getString(context, "source")))
+                                    )
+                            )
+                    )
+                    .then(ClientCommandManager.literal("watch")
+                            .executes(context -> startWatch(context, "force", "external"))
+                            .then(ClientCommandManager.literal("stop")
+                                    .executes(this::stopWatch))
+                            .then(ClientCommandManager.argument("compatibility", StringArgumentType.word())
+                                    .suggests((context, builder) -> {
+                                        builder.suggest("force");
+                                        builder.suggest("compatible");
+                                        return builder.buildFuture();
+                                    })
+                                    .executes(context -> startWatch(context, StringArgumentType.getString(context, "compatibility"), "external"))
+                                    .then(ClientCommandManager.argument("source", StringArgumentType.word())
+                                            .suggests((context, builder) -> {
+                                                builder.suggest("everything");
+                                                builder.suggest("external");
+                                                return builder.buildFuture();
+                                            })
+                                            .executes(context -> startWatch(context,
+                                                    StringArgumentType.getString(context, "compatibility"),
+                                                    StringArgumentType.getString(context, "source")))
+                                    )
+                            )
+                    )
+                    .then(ClientCommandManager.literal("filter")
+                            .executes(this::listFilters)
+                            .then(ClientCommandManager.literal("include")
+                                    .then(ClientCommandManager.argument("rule", StringArgumentType.greedyString())
+                                            .executes(context -> addFilter(context, true))))
+                            .then(ClientCommandManager.literal("exclude")
+                                    .then(ClientCommandManager.argument("rule", StringArgumentType.greedyString())
+                                            .executes(context -> addFilter(context, false))))
+                            .then(ClientCommandManager.literal("remove")
+                                    .then(ClientCommandManager.argument("rule", StringArgumentType.greedyString())
+                                            .suggests((context, builder) -> {
+                                                configManager.getConfig().includeRules.forEach(builder::suggest);
+                                                configManager.getConfig().excludeRules.forEach(builder::suggest);
+                                                return builder.buildFuture();
+                                            })
+                                            .executes(this::removeFilter)))
+                            .then(ClientCommandManager.literal("clear")
+                                    .executes(this::clearFilters))
+                    )
+                    .then(ClientCommandManager.literal("worlds")
+                            .then(ClientCommandManager.argument("worlds", StringArgumentType.string())
+                                    .suggests((context, builder) -> {
+                                        builder.suggest("all");
+                                        return builder.buildFuture();
+                                    })
+                                    .executes(context -> startFanOut(context, StringArgumentType.getString(context, "worlds"), "force", "external"))
+                                    .then(ClientCommandManager.argument("compatibility", StringArgumentType.word())
+                                            .suggests((context, builder) -> {
+                                                builder.suggest("force");
+                                                builder.suggest("compatible");
+                                                return builder.buildFuture();
+                                            })
+                                            .executes(context -> startFanOut(context, StringArgumentType.getString(context, "worlds"),
+                                                    StringArgumentType.getString(context, "compatibility"), "external"))
+                                            .then(ClientCommandManager.argument("source", StringArgumentType.word())
+                                                    .suggests((context, builder) -> {
+                                                        builder.suggest("everything");
+                                                        builder.suggest("external");
+                                                        return builder.buildFuture();
+                                                    })
+                                                    .executes(context -> startFanOut(context, StringArgumentType.getString(context, "worlds"),
+                                                            StringArgumentType.getString(context, "compatibility"),
+                                                            StringArgumentType.getString(context, "source")))
+                                            )
+                                    )
+                            )
+                    )
                     .then(ClientCommandManager.argument("compatibility", StringArgumentType.word())
                             .suggests((context, builder) -> {
                                 builder.suggest("force");
@@ -65,40 +196,399 @@ public class WorldsResourcepackSetterClient implements ClientModInitializer {
         }
 
         Path currentWorldPath = client.getSingleplayerServer().getWorldPath(LevelResource.ROOT);
+        Path targetFolder = worldResourceManager.resolveTargetFolder(currentWorldPath);
+        if (targetFolder == null) {
+            context.getSource().sendError(Component.translatable("commands.wrs.error", "target folder unavailable").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        FabricClientCommandSource feedback = context.getSource();
+        ExportScheduler.Result result = exportScheduler.submit(targetFolder,
+                job -> runExport(job, feedback, compatibility, source, currentWorldPath));
+
+        if (result == ExportScheduler.Result.COALESCED) {
+            feedback.sendFeedback(Component.translatable("commands.wrs.coalesced").withStyle(ChatFormatting.GRAY));
+        } else {
+            feedback.sendFeedback(Component.translatable("commands.wrs.start", compatibility, source).withStyle(ChatFormatting.GRAY));
+        }
+        return 1;
+    }
+
+    private int startFanOut(CommandContext<FabricClientCommandSource> context, String selector, String compatibility, String source) {
+        FabricClientCommandSource feedback = context.getSource();
+        List<Path> worlds;
+        try {
+            worlds = worldResourceManager.findWorlds(selector);
+        } catch (Exception e) {
+            LOGGER.error("Failed to list worlds", e);
+            feedback.sendError(Component.translatable("commands.wrs.error", e.getMessage()).withStyle(ChatFormatting.RED));
+            return 0;
+        }
+        if (worlds.isEmpty()) {
+            feedback.sendError(Component.translatable("commands.wrs.no_worlds", selector).withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        ExportScheduler.Result result = exportScheduler.submit(worldResourceManager.getFanOutFolder(),
+                job -> runFanOut(job, feedback, compatibility, source, worlds));
+
+        if (result == ExportScheduler.Result.COALESCED) {
+            feedback.sendFeedback(Component.translatable("commands.wrs.coalesced").withStyle(ChatFormatting.GRAY));
+        } else {
+            feedback.sendFeedback(Component.translatable("commands.wrs.start", compatibility, source).withStyle(ChatFormatting.GRAY));
+        }
+        return worlds.size();
+    }
+
+    private int startPlan(CommandContext<FabricClientCommandSource> context, String compatibility, String source) {
+        Minecraft client = Minecraft.getInstance();
+        FabricClientCommandSource feedback = context.getSource();
+        if (client.getSingleplayerServer() == null) {
+            feedback.sendError(Component.translatable("commands.wrs.only_singleplayer").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        Path currentWorldPath = client.getSingleplayerServer().getWorldPath(LevelResource.ROOT);
+        Path targetFolder = worldResourceManager.getTargetFolder(currentWorldPath);
+        ExportScheduler.Result result = exportScheduler.submit(targetFolder.resolve(PLAN_JOB),
+                job -> runPlan(feedback, compatibility, source, currentWorldPath));
+        if (result == ExportScheduler.Result.COALESCED) {
+            feedback.sendFeedback(Component.translatable("commands.wrs.coalesced").withStyle(ChatFormatting.GRAY));
+        }
+        return 1;
+    }
+
+    private int startWatch(CommandContext<FabricClientCommandSource> context, String compatibility, String source) {
+        Minecraft client = Minecraft.getInstance();
+        FabricClientCommandSource feedback = context.getSource();
+        if (client.getSingleplayerServer() == null) {
+            feedback.sendError(Component.translatable("commands.wrs.only_singleplayer").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        Path currentWorldPath = client.getSingleplayerServer().getWorldPath(LevelResource.ROOT);
+        Path targetFolder = worldResourceManager.resolveTargetFolder(currentWorldPath);
+        if (targetFolder == null) {
+            feedback.sendError(Component.translatable("commands.wrs.error", "target folder unavailable").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        List<Path> locations = new ArrayList<>();
+        for (PackSource.SourcePack pack : new RepositoryPackSource(compatibility, source, false).getPacks()) {
+            if (pack.getLocation() != null) locations.add(pack.getLocation());
+        }
+        if (locations.isEmpty()) {
+            feedback.sendError(Component.translatable("commands.wrs.watch.no_packs").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        WrsCommon.ModConfig cfg = configManager.getConfig();
+        PackWatcher watcher;
+        try {
+            watcher = new PackWatcher(locations, ResourceFilter.compile(cfg.includeRules, cfg.excludeRules), cfg.watchDebounceMillis,
+                    () -> {
+                        packExporter.invalidatePlan();
+                        exportScheduler.submit(targetFolder, job -> runWatchExport(job, feedback, compatibility, source, currentWorldPath));
+                    });
+        } catch (Exception e) {
+            LOGGER.error("Failed to watch packs", e);
+            feedback.sendError(Component.translatable("commands.wrs.error", e.getMessage()).withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        stopWatching();
+        packWatcher = watcher;
+        LOGGER.info("Watching {} packs in {} folders for changes", locations.size(), watcher.getWatchedFolderCount());
+        feedback.sendFeedback(Component.translatable("commands.wrs.watch.started", locations.size()).withStyle(ChatFormatting.GREEN));
+        return locations.size();
+    }
+
+    private int stopWatch(CommandContext<FabricClientCommandSource> context) {
+        if (!stopWatching()) {
+            context.getSource().sendFeedback(Component.translatable("commands.wrs.watch.none").withStyle(ChatFormatting.GRAY));
+            return 0;
+        }
+        context.getSource().sendFeedback(Component.translatable("commands.wrs.watch.stopped").withStyle(ChatFormatting.YELLOW));
+        return 1;
+    }
+
+    private boolean stopWatching() {
+        PackWatcher watcher = packWatcher;
+        if (watcher == null) return false;
+        packWatcher = null;
+        watcher.close();
+        return true;
+    }
+
+    private int listFilters(CommandContext<FabricClientCommandSource> context) {
+        WrsCommon.ModConfig cfg = configManager.getConfig();
+        String includes = cfg.includeRules.isEmpty() ? "*" : String.join(" ", cfg.includeRules);
+        String excludes = cfg.excludeRules.isEmpty() ? "-" : String.join(" ", cfg.excludeRules);
+        context.getSource().sendFeedback(Component.translatable("commands.wrs.filter.list", includes, excludes).withStyle(ChatFormatting.GRAY));
+        return cfg.includeRules.size() + cfg.excludeRules.size();
+    }
+
+    private int addFilter(CommandContext<FabricClientCommandSource> context, boolean include) {
+        String rule = StringArgumentType.getString(context, "rule").trim();
+        String problem = ResourceFilter.validate(rule);
+        if (problem != null || rule.contains(" ")) {
+            context.getSource().sendError(Component.translatable("commands.wrs.filter.invalid", rule,
+                    problem != null ? problem : "spaces are not allowed").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        // Exports may be iterating the current lists, so swap in a copy instead of changing them
+        WrsCommon.ModConfig cfg = configManager.getConfig();
+        List<String> rules = include ? cfg.includeRules : cfg.excludeRules;
+        if (!rules.contains(rule)) {
+            List<String> updated = new ArrayList<>(rules);
+            updated.add(rule);
+            if (include) cfg.includeRules = updated;
+            else cfg.excludeRules = updated;
+            configManager.save();
+        }
+        context.getSource().sendFeedback(Component.translatable("commands.wrs.filter.added", rule).withStyle(ChatFormatting.GREEN));
+        return 1;
+    }
+
+    private int removeFilter(CommandContext<FabricClientCommandSource> context) {
+        String rule = StringArgumentType.getString(context, "rule").trim();
+        WrsCommon.ModConfig cfg = configManager.getConfig();
+        List<String> includes = new ArrayList<>(cfg.includeRules);
+        List<String> excludes = new ArrayList<>(cfg.excludeRules);
+        boolean removed = includes.remove(rule) | excludes.remove(rule);
+        if (!removed) {
+            context.getSource().sendError(Component.translatable("commands.wrs.filter.missing", rule).withStyle(ChatFormatting.RED));
+            return 0;
+        }
+        cfg.includeRules = includes;
+        cfg.excludeRules = excludes;
+        configManager.save();
+        context.getSource().sendFeedback(Component.translatable("commands.wrs.filter.removed", rule).withStyle(ChatFormatting.YELLOW));
+        return 1;
+    }
+
+    private int clearFilters(CommandContext<FabricClientCommandSource> context) {
+        WrsCommon.ModConfig cfg = configManager.getConfig();
+        int count = cfg.includeRules.size() + cfg.excludeRules.size();
+        cfg.includeRules = new ArrayList<>();
+        cfg.excludeRules = new ArrayList<>();
+        configManager.save();
+        context.getSource().sendFeedback(Component.translatable("commands.wrs.filter.cleared").withStyle(ChatFormatting.YELLOW));
+        return count;
+    }
+
+    private int cancelExports(CommandContext<FabricClientCommandSource> context) {
+        int count = exportScheduler.cancelAll();
+        if (count == 0) {
+            context.getSource().sendFeedback(Component.translatable("commands.wrs.cancel_none").withStyle(ChatFormatting.GRAY));
+        } else {
+            context.getSource().sendFeedback(Component.translatable("commands.wrs.cancel", count).withStyle(ChatFormatting.YELLOW));
+        }
+        return count;
+    }
+
+    private void runWatchExport(ExportScheduler.Job job, FabricClientCommandSource feedback, String compatibility, String source, Path currentWorldPath) {
+        // A change is what started this export, so a listing a plan cached in the meantime can't be trusted
+        packExporter.invalidatePlan();
+        runExport(job, feedback, compatibility, source, currentWorldPath);
+
+        // Every change exports a new archive into the world, only the newest and the hot-applied one are still needed.
+        // Queued behind the hot-apply of this export, so it sees the archive that is actually in use.
+        Path targetFolder = worldResourceManager.getTargetFolder(currentWorldPath);
+        if (Files.exists(targetFolder.resolve("level.dat"))) {
+            Minecraft.getInstance().execute(() -> worldResourceManager.dropSupersededAsync(targetFolder, hotAppliedArchive));
+        }
+    }
+
+    private void runExport(ExportScheduler.Job job, FabricClientCommandSource feedback, String compatibility, String source, Path currentWorldPath) {
+        Minecraft client = Minecraft.getInstance();
         Path targetFile = worldResourceManager.resolveExportPath(currentWorldPath);
+        if (targetFile == null) {
+            client.execute(() -> feedback.sendError(Component.translatable("commands.wrs.error", "target folder unavailable").withStyle(ChatFormatting.RED)));
+            return;
+        }
         Path targetFolder = targetFile.getParent();
 
-        context.getSource().sendFeedback(Component.translatable("commands.wrs.start", compatibility, source).withStyle(ChatFormatting.GRAY));
+        ExportMetrics metrics = new ExportMetrics(targetFile);
+        activeExport = metrics;
+        try {
+            int count = buildArchive(job, compatibility, source, targetFile, metrics);
 
-        CompletableFuture.runAsync(() -> {
-            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(targetFile))) {
-                zos.setLevel(ZipOutputStream.STORED);
+            boolean isWorld = Files.exists(targetFolder.resolve("level.dat"));
+            boolean isCurrentWorld = targetFolder.equals(currentWorldPath);
 
-                int count = packExporter.processResourcePacks(compatibility, source, zos);
-                packExporter.createPackMcmeta(zos);
+            String archiveName = targetFile.getFileName().toString();
+            if (isWorld) {
+                if (!"resources.zip".equals(archiveName)) ArchiveIndex.record(targetFolder, archiveName);
+                worldResourceManager.shareArchive(targetFile, targetFolder);
+                configManager.addPendingWorld(targetFolder);
+            } else {
+                // Pending worlds only ever apply their newest archive, folders under savePath keep collecting them
+                ArchiveIndex.record(targetFolder, archiveName);
+                worldResourceManager.pruneAsync(targetFolder);
+            }
 
-                boolean isWorld = Files.exists(targetFolder.resolve("level.dat"));
-                boolean isCurrentWorld = targetFolder.equals(currentWorldPath);
+            client.execute(() -> {
+                // Оригинальная логика вывода в чат
+                client.gui.getChat().addMessage(Component.translatable("commands.wrs.success", count, targetFile.getFileName()).withStyle(ChatFormatting.GREEN));
 
-                if (isWorld) configManager.addPendingWorld(targetFolder);
+                if (isCurrentWorld && configManager.getConfig().hotApply && hotApply(client, currentWorldPath, targetFile)) {
+                    client.gui.getChat().addMessage(Component.translatable("commands.wrs.hot_applied").withStyle(ChatFormatting.AQUA));
+                } else if (isCurrentWorld) {
+                    client.gui.getChat().addMessage(Component.translatable("commands.wrs.hint").withStyle(ChatFormatting.AQUA));
+                } else if (isWorld) {
+                    String folderName = targetFolder.getFileName().toString();
+                    client.gui.getChat().addMessage(Component.translatable("commands.wrs.althint", folderName).withStyle(ChatFormatting.YELLOW));
+                }
+            });
+        } catch (Exception e) {
+            exportFailed(job, feedback, targetFile, e);
+        } finally {
+            activeExport = null;
+        }
+    }
 
-                client.execute(() -> {
-                    // Оригинальная логика вывода в чат
-                    client.gui.getChat().addMessage(Component.translatable("commands.wrs.success", count, targetFile.getFileName()).withStyle(ChatFormatting.GREEN));
+    /**
+     * Replaces the open world's pack with {@code archive} through the server pack stack, which reloads only
+     * client resources. The world's old resources.zip is popped rather than overwritten, so it is never written
+     * to while loaded, and the pending swap on disk happens after the world is closed.
+     */
+    private boolean hotApply(Minecraft client, Path worldPath, Path archive) {
+        if (client.getSingleplayerServer() == null || !worldPath.equals(client.getSingleplayerServer().getWorldPath(LevelResource.ROOT))) {
+            return false;
+        }
+        try {
+            DownloadedPackSource packs = client.getDownloadedPackSource();
+            packs.popAll();
+            packs.pushLocalPack(UUID.nameUUIDFromBytes(archive.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8)), archive);
+            hotAppliedArchive = archive;
+            LOGGER.info("Hot-applied {} to the open world", archive);
+            return true;
+        } catch (Exception e) {
+            LOGGER.error("Failed to hot-apply {}", archive, e);
+            return false;
+        }
+    }
+
+    private void runFanOut(ExportScheduler.Job job, FabricClientCommandSource feedback, String compatibility, String source, List<Path> worlds) {
+        Minecraft client = Minecraft.getInstance();
+        Path fanOutFolder = worldResourceManager.getFanOutFolder();
+        Path staged = fanOutFolder.resolve("fanout.zip");
+        Path next = fanOutFolder.resolve("fanout_next.zip");
 
-                    if (isCurrentWorld) {
-                        client.gui.getChat().addMessage(Component.translatable("commands.wrs.hint").withStyle(ChatFormatting.AQUA));
-                    } else if (isWorld) {
-                        String folderName = targetFolder.getFileName().toString();
-                        client.gui.getChat().addMessage(Component.translatable("commands.wrs.althint", folderName).withStyle(ChatFormatting.YELLOW));
-                    }
-                });
-            } catch (Exception e) {
-                LOGGER.error("Export failed", e);
-                client.execute(() -> context.getSource().sendError(Component.translatable("commands.wrs.error", e.getMessage()).withStyle(ChatFormatting.RED)));
+        ExportMetrics metrics = new ExportMetrics(next);
+        activeExport = metrics;
+        try {
+            Files.createDirectories(fanOutFolder);
+            WorldResourceManager.deleteWithSidecars(next);
+            int count = buildArchive(job, compatibility, source, next, metrics);
+
+            WorldResourceManager.deleteWithSidecars(staged);
+            WorldResourceManager.moveWithSidecars(next, staged);
+            int delivered = worldResourceManager.deliver(staged, worlds);
+            LOGGER.info("Delivered {} to {} of {} worlds", staged, delivered, worlds.size());
+
+            client.execute(() -> client.gui.getChat().addMessage(Component.translatable("commands.wrs.fanout_success",
+                    count, delivered, worlds.size()).withStyle(delivered == worlds.size() ? ChatFormatting.GREEN : ChatFormatting.YELLOW)));
+        } catch (Exception e) {
+            exportFailed(job, feedback, next, e);
+        } finally {
+            activeExport = null;
+        }
+    }
+
+    private void runPlan(FabricClientCommandSource feedback, String compatibility, String source, Path currentWorldPath) {
+        Minecraft client = Minecraft.getInstance();
+        Path targetFile = worldResourceManager.peekExportPath(currentWorldPath);
+
+        ExportEstimate estimate;
+        try {
+            estimate = packExporter.plan(compatibility, source, targetFile);
+        } catch (Exception e) {
+            LOGGER.error("Planning failed", e);
+            client.execute(() -> feedback.sendError(Component.translatable("commands.wrs.error", e.getMessage()).withStyle(ChatFormatting.RED)));
+            return;
+        }
+
+        client.execute(() -> {
+            feedback.sendFeedback(Component.translatable("commands.wrs.plan.summary", estimate.getEntryCount(),
+                    estimate.getPacks().size(), estimate.getShadowedCount(), targetFile.getFileName()).withStyle(ChatFormatting.GREEN));
+            for (ExportEstimate.PackEstimate pack : estimate.getPacks()) {
+                feedback.sendFeedback(Component.translatable(pack.failed() ? "commands.wrs.plan.pack_failed" : "commands.wrs.plan.pack",
+                        pack.id(), pack.contributed(), pack.shadowed()).withStyle(pack.failed() ? ChatFormatting.RED : ChatFormatting.GRAY));
+            }
+            feedback.sendFeedback(Component.translatable("commands.wrs.plan.size", megabytes(estimate.getUncompressedBytes()),
+                    megabytes(estimate.getCompressedBytes())).withStyle(ChatFormatting.GRAY));
+            if (estimate.getUnknownSizeCount() > 0) {
+                feedback.sendFeedback(Component.translatable("commands.wrs.plan.unknown", estimate.getUnknownSizeCount()).withStyle(ChatFormatting.GRAY));
+            }
+            if (estimate.getSeconds() < 0) {
+                feedback.sendFeedback(Component.translatable("commands.wrs.plan.time_unknown").withStyle(ChatFormatting.GRAY));
+            } else {
+                feedback.sendFeedback(Component.translatable("commands.wrs.plan.time",
+                        String.format(Locale.ROOT, "%.1f", estimate.getSeconds()),
+                        String.format(Locale.ROOT, "%.1f", estimate.getThroughputMBs())).withStyle(ChatFormatting.GRAY));
             }
         });
-        return 1;
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f", bytes / 1024.0 / 1024.0);
+    }
+
+    private int buildArchive(ExportScheduler.Job job, String compatibility, String source, Path targetFile, ExportMetrics metrics) throws Exception {
+        PackExporter.ExportResult result;
+        Path part = ArchiveChecksum.partFor(targetFile);
+        try {
+            try (ZipArchiveWriter zip = new ZipArchiveWriter(Files.newOutputStream(part))) {
+                result = packExporter.processResourcePacks(compatibility, source, targetFile, zip, metrics);
+                job.checkCancelled();
+                packExporter.createPackMcmeta(zip);
+            }
+            job.checkCancelled();
+            ArchiveChecksum.commit(part, targetFile, ExportPipeline.defaultThreads(configManager.getConfig().exportThreads));
+        } finally {
+            Files.deleteIfExists(part);
+        }
+        packExporter.writeSidecars(targetFile, result);
+        LOGGER.info("Exported {} entries to {} at {} MB/s", metrics.getEntriesWritten(), targetFile,
+                String.format(Locale.ROOT, "%.1f", metrics.getThroughputMBs()));
+        return result.packCount();
+    }
+
+    private void exportFailed(ExportScheduler.Job job, FabricClientCommandSource feedback, Path targetFile, Exception e) {
+        Minecraft client = Minecraft.getInstance();
+        try {
+            WorldResourceManager.deleteWithSidecars(targetFile);
+        } catch (Exception deleteError) {
+            LOGGER.warn("Failed to remove partial export {}", targetFile, deleteError);
+        }
+
+        if (job.isCancelled()) {
+            LOGGER.info("Export to {} cancelled", targetFile);
+            client.execute(() -> client.gui.getChat().addMessage(Component.translatable("commands.wrs.cancelled", targetFile.getFileName()).withStyle(ChatFormatting.YELLOW)));
+            return;
+        }
+        LOGGER.error("Export failed", e);
+        client.execute(() -> feedback.sendError(Component.translatable("commands.wrs.error", e.getMessage()).withStyle(ChatFormatting.RED)));
+    }
+
+    private void showProgress(Minecraft client) {
+        ExportMetrics metrics = activeExport;
+        if (metrics == null || client.gui == null || progressTicks++ % 10 != 0) return;
+
+        MutableComponent message;
+        if ("listing".equals(metrics.getPhase())) {
+            message = Component.translatable("commands.wrs.progress.listing");
+        } else {
+            int planned = Math.max(1, metrics.getEntriesPlanned());
+            message = Component.translatable("commands.wrs.progress",
+                    metrics.getEntriesDone() * 100 / planned,
+                    metrics.getEntriesDone(), metrics.getEntriesPlanned(),
+                    String.format(Locale.ROOT, "%.1f", metrics.getThroughputMBs()));
+        }
+        client.gui.setOverlayMessage(message.withStyle(ChatFormatting.GRAY), false);
     }
 
     public static WorldsResourcepackSetterClient getInstance() {
@@ -5,7 +5,9 @@ import com.google.gson.GsonBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class WrsCommon {
     public static final Logger LOGGER = LoggerFactory.getLogger("WRS");
@@ -15,12 +17,34 @@ public class WrsCommon {
     public static final String DEFAULT_DESCRIPTION = "Embedded resources.";
     public static final String DEFAULT_PATH = "";
 
+    public static final int EXPORT_THREAD_PRIORITY = Thread.NORM_PRIORITY - 2;
+    public static final List<String> SIDECAR_SUFFIXES = List.of(ExportManifest.SUFFIX, ExportMetrics.SUFFIX, ArchiveChecksum.SUFFIX);
+
     public static class ModConfig {
-        public List<String> pendingWorlds = new ArrayList<>();
+        public Set<String> pendingWorlds = new LinkedHashSet<>();
         public boolean includeVanilla = false;
+        public boolean overridesOnly = false;
 
         public String savePath = DEFAULT_PATH;
         public String customFileName = DEFAULT_FILENAME;
         public String customDescription = DEFAULT_DESCRIPTION;
+
+        public int exportThreads = 0;
+        public int exportQueueMegabytes = 64;
+
+        public int compressionLevel = 6;
+        public List<String> storedExtensions = new ArrayList<>(List.of("png", "ogg", "jpg", "jpeg", "zip"));
+        public boolean minifyJson = false;
+        public boolean recompressPng = false;
+        public int watchDebounceMillis = 750;
+        public int retainArchives = 0;
+        public int retainMegabytes = 0;
+        public int retainDays = 0;
+        public boolean hotApply = false;
+
+        public boolean sharedBlobStore = false;
+
+        public List<String> includeRules = new ArrayList<>();
+        public List<String> excludeRules = new ArrayList<>();
     }
 }
\ No newline at end of file
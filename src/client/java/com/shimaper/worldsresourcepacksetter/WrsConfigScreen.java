@@ -12,14 +12,20 @@ import org.jetbrains.annotations.NotNull;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class WrsConfigScreen extends Screen {
+    private static final int WARNING_HEIGHT = 12;
+
     private final Screen parent;
     private final ConfigManager configManager;
 
     private EditBox fileNameEdit;
     private EditBox descEdit;
     private EditBox pathEdit;
+    private EditBox includeEdit;
+    private EditBox excludeEdit;
     private Button saveButton;
     private boolean tempIncludeVanilla;
 
@@ -34,8 +40,9 @@ public class WrsConfigScreen extends Screen {
     protected void init() {
         WrsCommon.ModConfig config = configManager.getConfig();
         int centerX = this.width / 2;
-        int y = 50;
-        int spacing = 30;
+        // Six rows plus the folder warning end at y 192, clear of the buttons even at the smallest GUI height (240)
+        int y = 40;
+        int spacing = 24;
 
         this.addRenderableWidget(CycleButton.onOffBuilder(tempIncludeVanilla)
                 .create(centerX - 100, y, 200, 20, Component.literal("Include Vanilla RP"), (btn, val) -> {
@@ -63,6 +70,22 @@ public class WrsConfigScreen extends Screen {
         pathEdit.setResponder(val -> updateSaveButtonSensitivity());
         this.addRenderableWidget(pathEdit);
 
+        // The "Folder not found" warning goes in the gap under the save path
+        int rulesY = y + spacing * 4 + WARNING_HEIGHT;
+        includeEdit = new EditBox(this.font, centerX - 100, rulesY, 200, 20, Component.literal("Include Rules"));
+        includeEdit.setMaxLength(1024);
+        includeEdit.setValue(String.join(" ", config.includeRules));
+        includeEdit.setHint(Component.literal("Include: everything").withStyle(ChatFormatting.GRAY));
+        includeEdit.setResponder(val -> updateSaveButtonSensitivity());
+        this.addRenderableWidget(includeEdit);
+
+        excludeEdit = new EditBox(this.font, centerX - 100, rulesY + spacing, 200, 20, Component.literal("Exclude Rules"));
+        excludeEdit.setMaxLength(1024);
+        excludeEdit.setValue(String.join(" ", config.excludeRules));
+        excludeEdit.setHint(Component.literal("Exclude: e.g. minecraft:sounds/** *.psd").withStyle(ChatFormatting.GRAY));
+        excludeEdit.setResponder(val -> updateSaveButtonSensitivity());
+        this.addRenderableWidget(excludeEdit);
+
         int buttonY = this.height - 40;
         saveButton = Button.builder(Component.translatable("gui.done"), btn -> {
             applyChanges();
@@ -84,10 +107,30 @@ public class WrsConfigScreen extends Screen {
         String inputName = fileNameEdit.getValue().isEmpty() ? "wps_resources" : fileNameEdit.getValue();
         String inputDesc = descEdit.getValue().isEmpty() ? "Embedded resources." : descEdit.getValue();
 
-        saveButton.active = tempIncludeVanilla != cfg.includeVanilla ||
+        List<String> includes = parseRules(includeEdit.getValue());
+        List<String> excludes = parseRules(excludeEdit.getValue());
+        boolean rulesValid = markRules(includeEdit, includes) & markRules(excludeEdit, excludes);
+
+        saveButton.active = rulesValid && (tempIncludeVanilla != cfg.includeVanilla ||
                 !inputName.equals(cfg.customFileName) ||
                 !inputDesc.equals(cfg.customDescription) ||
-                !pathEdit.getValue().equals(cfg.savePath);
+                !pathEdit.getValue().equals(cfg.savePath) ||
+                !includes.equals(cfg.includeRules) ||
+                !excludes.equals(cfg.excludeRules));
+    }
+
+    private static List<String> parseRules(String value) {
+        List<String> rules = new ArrayList<>();
+        for (String rule : value.trim().split("\\s+")) {
+            if (!rule.isEmpty()) rules.add(rule);
+        }
+        return rules;
+    }
+
+    private static boolean markRules(EditBox edit, List<String> rules) {
+        boolean valid = rules.stream().allMatch(rule -> ResourceFilter.validate(rule) == null);
+        edit.setTextColor(valid ? 0xFFFFFF : 0xFF5555);
+        return valid;
     }
 
     private void applyChanges() {
@@ -96,6 +139,8 @@ public class WrsConfigScreen extends Screen {
         cfg.customFileName = fileNameEdit.getValue().isEmpty() ? "wps_resources" : fileNameEdit.getValue();
         cfg.customDescription = descEdit.getValue().isEmpty() ? "Embedded resources." : descEdit.getValue();
         cfg.savePath = pathEdit.getValue();
+        cfg.includeRules = parseRules(includeEdit.getValue());
+        cfg.excludeRules = parseRules(excludeEdit.getValue());
     }
 
     @Override
@@ -111,7 +156,7 @@ public class WrsConfigScreen extends Screen {
             try {
                 Path p = Paths.get(currentPath);
                 if (!Files.exists(p) || !Files.isDirectory(p)) {
-                    graphics.drawCenteredString(this.font, "⚠ Folder not found", centerX, pathEdit.getY() + 22, 0xFF5555);
+                    graphics.drawCenteredString(this.font, "⚠ Folder not found", centerX, pathEdit.getY() + pathEdit.getHeight() + 3, 0xFF5555);
                     pathEdit.setTextColor(0xFF5555);
                 } else {
                     pathEdit.setTextColor(0xFFFFFF);
@@ -0,0 +1,186 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import static com.shimaper.worldsresourcepacksetter.ZipArchiveWriter.*;
+
+/**
+ * Reads the central directory of a zip file and hands out entries as raw compressed bytes.
+ * Positional reads only, so one reader can be shared by all export workers.
+ */
+public class ZipArchiveReader implements AutoCloseable {
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, RawEntry> entries = new LinkedHashMap<>();
+    private long centralOffset;
+
+    public record RawEntry(String name, int method, long crc, long compressedSize, long size, long dosTime, long offset) {
+        public long time() {
+            return fromDosTime(dosTime);
+        }
+
+        public boolean isCopyable() {
+            return (method == STORED || method == DEFLATED) && compressedSize < Integer.MAX_VALUE;
+        }
+    }
+
+    public ZipArchiveReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            readCentralDirectory();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public RawEntry get(String name) {
+        return entries.get(name);
+    }
+
+    public Collection<RawEntry> entries() {
+        return entries.values();
+    }
+
+    /** Start of the central directory; everything from here to the end of the file is zip metadata. */
+    public long getCentralDirectoryOffset() {
+        return centralOffset;
+    }
+
+    public byte[] readRaw(RawEntry entry) throws IOException {
+        ByteBuffer local = read(entry.offset(), 30);
+        if (local.getInt(0) != LOCAL_HEADER) throw new ZipException("Bad local header for " + entry.name() + " in " + file);
+        long dataStart = entry.offset() + 30 + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+        return read(dataStart, (int) entry.compressedSize()).array();
+    }
+
+    public byte[] read(RawEntry entry) throws IOException {
+        byte[] raw = readRaw(entry);
+        if (entry.method() == STORED) return raw;
+        if (entry.method() != DEFLATED) throw new ZipException("Unsupported compression method " + entry.method() + " for " + entry.name());
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(raw);
+            byte[] data = new byte[(int) entry.size()];
+            int length = 0;
+            while (length < data.length && !inflater.finished()) {
+                int n = inflater.inflate(data, length, data.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += n;
+            }
+            if (length != data.length) throw new ZipException("Truncated entry " + entry.name() + " in " + file);
+            return data;
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt entry " + entry.name() + " in " + file + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void readCentralDirectory() throws IOException {
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, MAX_COMMENT + 22);
+        ByteBuffer tail = read(fileSize - tailSize, tailSize);
+
+        int endPos = -1;
+        for (int i = tailSize - 22; i >= 0; i--) {
+            if (tail.getInt(i) == END_HEADER) {
+                endPos = i;
+                break;
+            }
+        }
+        if (endPos < 0) throw new ZipException("No end of central directory in " + file);
+
+        long count = tail.getShort(endPos + 10) & 0xFFFF;
+        long centralSize = tail.getInt(endPos + 12) & ZIP64_MAGIC;
+        long centralOffset = tail.getInt(endPos + 16) & ZIP64_MAGIC;
+
+        if (count == 0xFFFF || centralSize == ZIP64_MAGIC || centralOffset == ZIP64_MAGIC) {
+            long locatorPos = fileSize - tailSize + endPos - 20;
+            ByteBuffer locator = read(locatorPos, 20);
+            if (locator.getInt(0) == ZIP64_LOCATOR) {
+                ByteBuffer record = read(locator.getLong(8), 56);
+                if (record.getInt(0) != ZIP64_END_HEADER) throw new ZipException("Bad zip64 end record in " + file);
+                count = record.getLong(32);
+                centralSize = record.getLong(40);
+                centralOffset = record.getLong(48);
+            }
+        }
+        if (centralSize > Integer.MAX_VALUE) throw new ZipException("Central directory too large in " + file);
+        this.centralOffset = centralOffset;
+
+        ByteBuffer cd = read(centralOffset, (int) centralSize);
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (cd.getInt(pos) != CENTRAL_HEADER) throw new ZipException("Bad central directory in " + file);
+            int flags = cd.getShort(pos + 8) & 0xFFFF;
+            int method = cd.getShort(pos + 10) & 0xFFFF;
+            long dosTime = cd.getInt(pos + 12) & ZIP64_MAGIC;
+            long crc = cd.getInt(pos + 16) & ZIP64_MAGIC;
+            long compressedSize = cd.getInt(pos + 20) & ZIP64_MAGIC;
+            long size = cd.getInt(pos + 24) & ZIP64_MAGIC;
+            int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+            int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+            int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+            long offset = cd.getInt(pos + 42) & ZIP64_MAGIC;
+
+            byte[] nameBytes = new byte[nameLength];
+            cd.get(pos + 46, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            int extra = pos + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = cd.getShort(extra) & 0xFFFF;
+                int length = cd.getShort(extra + 2) & 0xFFFF;
+                if (id == 0x0001) {
+                    int field = extra + 4;
+                    if (size == ZIP64_MAGIC) { size = cd.getLong(field); field += 8; }
+                    if (compressedSize == ZIP64_MAGIC) { compressedSize = cd.getLong(field); field += 8; }
+                    if (offset == ZIP64_MAGIC) offset = cd.getLong(field);
+                }
+                extra += 4 + length;
+            }
+            pos = extraEnd + commentLength;
+
+            boolean encrypted = (flags & 0x1) != 0;
+            if (!encrypted && !name.endsWith("/")) {
+                entries.put(name, new RawEntry(name, method, crc, compressedSize, size, dosTime, offset));
+            }
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) throw new ZipException("Unexpected end of " + file);
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
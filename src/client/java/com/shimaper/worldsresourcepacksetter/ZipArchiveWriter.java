@@ -0,0 +1,189 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Minimal sequential zip writer that accepts already-compressed payloads, so entries can be copied
+ * between archives or deflated on other threads without another inflate/deflate round trip.
+ */
+public class ZipArchiveWriter implements AutoCloseable {
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    static final int LOCAL_HEADER = 0x04034b50;
+    static final int CENTRAL_HEADER = 0x02014b50;
+    static final int END_HEADER = 0x06054b50;
+    static final int ZIP64_END_HEADER = 0x06064b50;
+    static final int ZIP64_LOCATOR = 0x07064b50;
+    static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int UTF8_FLAG = 0x0800;
+    /** Every entry is stamped 1980-01-01 00:00, so the same input always gives the same bytes and can be deduplicated. */
+    private static final long FIXED_DOS_TIME = (1 << 21) | (1 << 16);
+
+    private final OutputStream out;
+    private final List<CentralEntry> central = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private long position;
+    private boolean finished;
+
+    private record CentralEntry(byte[] name, int method, long crc, long compressedSize, long size, long offset) {}
+
+    public ZipArchiveWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out, 1 << 16);
+    }
+
+    public void writeEntry(String name, int method, long crc, long size, byte[] data) throws IOException {
+        if (finished) throw new ZipException("Archive already finished");
+        if (!names.add(name)) throw new ZipException("duplicate entry: " + name);
+        if (size >= ZIP64_MAGIC) throw new ZipException("Entry too large: " + name);
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long offset = position;
+
+        ByteBuffer header = buffer(30 + nameBytes.length);
+        header.putInt(LOCAL_HEADER);
+        header.putShort((short) 20);
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) method);
+        header.putInt((int) FIXED_DOS_TIME);
+        header.putInt((int) crc);
+        header.putInt(data.length);
+        header.putInt((int) size);
+        header.putShort((short) nameBytes.length);
+        header.putShort((short) 0);
+        header.put(nameBytes);
+        write(header);
+        write(data);
+
+        central.add(new CentralEntry(nameBytes, method, crc, data.length, size, offset));
+    }
+
+    public void writeStored(String name, byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        writeEntry(name, STORED, crc.getValue(), data.length, data);
+    }
+
+    public long getBytesWritten() {
+        return position;
+    }
+
+    public void finish() throws IOException {
+        if (finished) return;
+        finished = true;
+
+        long centralOffset = position;
+        for (CentralEntry entry : central) {
+            boolean zip64 = entry.offset() >= ZIP64_MAGIC;
+            ByteBuffer header = buffer(46 + entry.name().length + (zip64 ? 12 : 0));
+            header.putInt(CENTRAL_HEADER);
+            header.putShort((short) (zip64 ? 45 : 20));
+            header.putShort((short) (zip64 ? 45 : 20));
+            header.putShort((short) UTF8_FLAG);
+            header.putShort((short) entry.method());
+            header.putInt((int) FIXED_DOS_TIME);
+            header.putInt((int) entry.crc());
+            header.putInt((int) entry.compressedSize());
+            header.putInt((int) entry.size());
+            header.putShort((short) entry.name().length);
+            header.putShort((short) (zip64 ? 12 : 0));
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putInt(0);
+            header.putInt((int) (zip64 ? ZIP64_MAGIC : entry.offset()));
+            header.put(entry.name());
+            if (zip64) {
+                header.putShort((short) 0x0001);
+                header.putShort((short) 8);
+                header.putLong(entry.offset());
+            }
+            write(header);
+        }
+        long centralSize = position - centralOffset;
+
+        boolean zip64 = central.size() >= 0xFFFF || centralOffset >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64Offset = position;
+            ByteBuffer record = buffer(56 + 20);
+            record.putInt(ZIP64_END_HEADER);
+            record.putLong(44);
+            record.putShort((short) 45);
+            record.putShort((short) 45);
+            record.putInt(0);
+            record.putInt(0);
+            record.putLong(central.size());
+            record.putLong(central.size());
+            record.putLong(centralSize);
+            record.putLong(centralOffset);
+            record.putInt(ZIP64_LOCATOR);
+            record.putInt(0);
+            record.putLong(zip64Offset);
+            record.putInt(1);
+            write(record);
+        }
+
+        ByteBuffer end = buffer(22);
+        end.putInt(END_HEADER);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) (zip64 ? 0xFFFF : central.size()));
+        end.putShort((short) (zip64 ? 0xFFFF : central.size()));
+        end.putInt((int) (zip64 ? ZIP64_MAGIC : centralSize));
+        end.putInt((int) (zip64 ? ZIP64_MAGIC : centralOffset));
+        end.putShort((short) 0);
+        write(end);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        write(buffer.array());
+    }
+
+    private void write(byte[] data) throws IOException {
+        out.write(data);
+        position += data.length;
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static long fromDosTime(long dosTime) {
+        try {
+            LocalDateTime time = LocalDateTime.of(
+                    (int) ((dosTime >> 25) & 0x7F) + 1980,
+                    (int) ((dosTime >> 21) & 0x0F),
+                    (int) ((dosTime >> 16) & 0x1F),
+                    (int) ((dosTime >> 11) & 0x1F),
+                    (int) ((dosTime >> 5) & 0x3F),
+                    (int) ((dosTime << 1) & 0x3E));
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
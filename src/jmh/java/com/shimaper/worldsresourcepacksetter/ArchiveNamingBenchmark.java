@@ -0,0 +1,67 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Naming and world apply with thousands of indexed archives left in a folder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiveNamingBenchmark {
+    @State(Scope.Benchmark)
+    public static class Folders {
+        @Param({"100", "2000", "10000"})
+        public int archives;
+
+        Path root;
+        Path exportFolder;
+        Path world;
+        WorldResourceManager manager;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            root = Files.createTempDirectory("wrs-jmh-naming");
+            exportFolder = root.resolve("exports");
+            world = root.resolve("saves").resolve("world");
+            Files.createDirectories(world);
+            Files.write(world.resolve("level.dat"), new byte[0]);
+
+            ConfigManager configManager = new ConfigManager(root.resolve("wrs_config.json"), root);
+            configManager.getConfig().savePath = exportFolder.toString();
+            manager = new WorldResourceManager(configManager);
+
+            SyntheticPacks.createArchives(exportFolder, WrsCommon.DEFAULT_FILENAME + "_", archives);
+            Files.write(exportFolder.resolve(WrsCommon.DEFAULT_FILENAME + ".zip"), new byte[0]);
+        }
+
+        @TearDown(Level.Trial)
+        public void cleanup() throws IOException {
+            SyntheticPacks.delete(root);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PendingWorld {
+        @Setup(Level.Invocation)
+        public void fill(Folders folders) throws IOException {
+            SyntheticPacks.createArchives(folders.world, WrsCommon.DEFAULT_FILENAME + "_", folders.archives);
+        }
+    }
+
+    @Benchmark
+    public Path resolveExportPath(Folders folders) {
+        return folders.manager.resolveExportPath(folders.world);
+    }
+
+    @Benchmark
+    public boolean tryCleanAndApplyLatest(Folders folders, PendingWorld pending) {
+        return folders.manager.tryCleanAndApplyLatest(folders.world);
+    }
+}
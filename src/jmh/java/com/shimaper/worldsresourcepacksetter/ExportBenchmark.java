@@ -0,0 +1,98 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full export of a synthetic pack stack. Run with {@code -prof gc} for allocation rate;
+ * the pipeline's peak queue memory is reported as an auxiliary counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportBenchmark {
+    @Param({"directory", "zip"})
+    public String backing;
+
+    @Param({"8"})
+    public int packs;
+
+    @Param({"2000"})
+    public int jsonFiles;
+
+    @Param({"4"})
+    public int atlases;
+
+    @Param({"512"})
+    public int atlasSize;
+
+    @Param({"0", "60"})
+    public int overlapPercent;
+
+    @Param({"false", "true"})
+    public boolean incremental;
+
+    private Path root;
+    private Path output;
+    private List<Path> packPaths;
+    private WrsCommon.ModConfig config;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long peakQueueBytes;
+        public long bytesWritten;
+    }
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        root = Files.createTempDirectory("wrs-jmh");
+        packPaths = SyntheticPacks.generate(root.resolve("packs"), packs, jsonFiles, atlases, atlasSize,
+                overlapPercent, "zip".equals(backing));
+        output = root.resolve("out").resolve("resources.zip");
+        Files.createDirectories(output.getParent());
+        config = new WrsCommon.ModConfig();
+        // The baseline the incremental runs reuse: resources.zip with its manifest sidecar
+        if (incremental) export(output);
+    }
+
+    @Setup(Level.Invocation)
+    public void cleanOutput() throws IOException {
+        if (incremental) return;
+        WorldResourceManager.deleteWithSidecars(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        SyntheticPacks.delete(root);
+    }
+
+    @Benchmark
+    public long exportStack(Counters counters) throws IOException {
+        Path target = incremental ? output.resolveSibling("next.zip") : output;
+        ExportMetrics metrics = export(target);
+        if (incremental) WorldResourceManager.deleteWithSidecars(target);
+        counters.peakQueueBytes = Math.max(counters.peakQueueBytes, metrics.getPeakQueueBytes());
+        counters.bytesWritten += metrics.getBytesWritten();
+        return metrics.getEntriesWritten();
+    }
+
+    private ExportMetrics export(Path target) throws IOException {
+        PackExporter exporter = new PackExporter(() -> config);
+        ExportMetrics metrics = new ExportMetrics(target);
+        PackExporter.ExportResult result;
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(Files.newOutputStream(target))) {
+            result = exporter.export(new FolderPackSource(packPaths), target, zip, metrics);
+            exporter.createPackMcmeta(zip);
+        }
+        exporter.writeSidecars(target, result);
+        return metrics;
+    }
+}
@@ -0,0 +1,121 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Reproducible pack stacks for the benchmarks. Every pack is generated from a fixed seed; all packs
+ * but the first put roughly {@code overlapPercent} of their files under shared paths that shadow each other.
+ */
+public final class SyntheticPacks {
+    private SyntheticPacks() {
+    }
+
+    public static List<Path> generate(Path root, int packs, int jsonFiles, int atlases, int atlasSize,
+                                      int overlapPercent, boolean zipped) throws IOException {
+        List<Path> result = new ArrayList<>();
+        for (int i = 0; i < packs; i++) {
+            Random random = new Random(0x5EED + i);
+            Path dir = root.resolve("pack_" + i);
+            Files.createDirectories(dir);
+
+            for (int f = 0; f < jsonFiles; f++) {
+                boolean shared = i > 0 && random.nextInt(100) < overlapPercent;
+                String name = shared ? "shared_" + f : "pack" + i + "_" + f;
+                write(dir.resolve("assets/minecraft/models/block/" + name + ".json"), model(random, name));
+            }
+            for (int a = 0; a < atlases; a++) {
+                String name = i > 0 && random.nextInt(100) < overlapPercent ? "shared_atlas_" + a : "pack" + i + "_atlas_" + a;
+                writeAtlas(dir.resolve("assets/minecraft/textures/atlas/" + name + ".png"), random, atlasSize);
+            }
+            write(dir.resolve("assets/minecraft/lang/en_us.json"), model(random, "lang_" + i));
+
+            if (zipped) {
+                Path zip = root.resolve("pack_" + i + ".zip");
+                zip(dir, zip);
+                delete(dir);
+                result.add(zip);
+            } else {
+                result.add(dir);
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public static void createArchives(Path folder, String prefix, int count) throws IOException {
+        Files.createDirectories(folder);
+        byte[] empty = new byte[22];
+        empty[0] = 0x50;
+        empty[1] = 0x4b;
+        empty[2] = 0x05;
+        empty[3] = 0x06;
+        for (int i = 1; i <= count; i++) {
+            Files.write(folder.resolve(prefix + i + ".zip"), empty);
+        }
+    }
+
+    public static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static byte[] model(Random random, String name) {
+        StringBuilder json = new StringBuilder("{\n    \"parent\": \"block/cube_all\",\n    \"name\": \"")
+                .append(name).append("\",\n    \"textures\": {\n");
+        int textures = 1 + random.nextInt(6);
+        for (int t = 0; t < textures; t++) {
+            json.append("        \"layer").append(t).append("\": \"minecraft:block/texture_")
+                    .append(random.nextInt(5000)).append('"').append(t + 1 < textures ? ",\n" : "\n");
+        }
+        return json.append("    }\n}\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeAtlas(Path file, Random random, int size) throws IOException {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < size; y += 16) {
+            for (int x = 0; x < size; x += 16) {
+                int color = random.nextInt() | 0xFF000000;
+                for (int py = y; py < Math.min(size, y + 16); py++) {
+                    for (int px = x; px < Math.min(size, x + 16); px++) {
+                        image.setRGB(px, py, (py + px) % 5 == 0 ? color ^ random.nextInt(0x000F0F0F) : color);
+                    }
+                }
+            }
+        }
+        Files.createDirectories(file.getParent());
+        ImageIO.write(image, "png", file.toFile());
+    }
+
+    private static void write(Path file, byte[] data) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, data);
+    }
+
+    private static void zip(Path dir, Path target) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(target));
+             Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                zos.putNextEntry(new ZipEntry(dir.relativize(file).toString().replace('\\', '/')));
+                Files.copy(file, zos);
+                zos.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.shimaper.worldsresourcepacksetter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeterministicExportTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameStackGivesSameArchive() throws Exception {
+        Path folder = dir.resolve("folder_pack");
+        write(folder.resolve("pack.mcmeta"), "{\"pack\":{\"pack_format\":34,\"description\":\"folder\"}}");
+        write(folder.resolve("assets/minecraft/models/block/stone.json"), "{\"parent\": \"block/cube_all\"}");
+        write(folder.resolve("assets/minecraft/lang/en_us.json"), "{\"block.minecraft.stone\": \"Rock\"}");
+
+        Path zipped = dir.resolve("zipped_pack.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(zipped))) {
+            put(zip, "pack.mcmeta", "{\"pack\":{\"pack_format\":34,\"description\":\"zipped\"}}");
+            put(zip, "assets/minecraft/models/block/stone.json", "{\"parent\": \"block/cube_column\"}");
+            put(zip, "assets/example/textures/item/gem.txt", "not really a texture");
+        }
+
+        Path first = export(List.of(folder, zipped), dir.resolve("out/first.zip"));
+        // Zip timestamps have a two second resolution, so anything taken from the clock would now differ
+        Thread.sleep(2100);
+        Path second = export(List.of(folder, zipped), dir.resolve("out/second.zip"));
+
+        assertTrue(Files.size(first) > 0);
+        BlobStore blobs = new BlobStore(dir.resolve("game"));
+        assertEquals(blobs.intern(first), blobs.intern(second));
+    }
+
+    private Path export(List<Path> packs, Path output) {
+        HeadlessExporter.Job job = new HeadlessExporter.Job();
+        job.output = output.toString();
+        for (Path pack : packs) job.packs.add(pack.toString());
+        assertTrue(HeadlessExporter.run(job, new WrsCommon.ModConfig()));
+        return output;
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private static void put(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}